@@ -0,0 +1,63 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPluginExtension;
+
+/**
+ * The Gradle plugin that packs atlases at build time.
+ * <p>
+ * This plugin registers a {@link PackAtlasTask} named {@code packAtlas}, which reads
+ * {@code src/main/atlas/atlas.csv} by default. If the Java plugin is applied, the emitted
+ * layout is added to the resources and the generated constants class to the sources
+ * of the main source set.
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public class BinPackingPlugin implements Plugin<Project> {
+    @Override
+    public void apply(Project project) {
+        var generated = project.getLayout().getBuildDirectory().dir("generated/binpacking");
+        var task = project.getTasks().register("packAtlas", PackAtlasTask.class, t -> {
+            t.setGroup("build");
+            t.setDescription("Packs the atlas manifest into a precomputed layout.");
+            t.getManifest().convention(project.getLayout().getProjectDirectory().file("src/main/atlas/atlas.csv"));
+            t.getPacker().convention("growing");
+            t.getSort().convention(true);
+            t.getLayoutFile().convention(generated.map(d -> d.file("resources/atlas.layout")));
+            t.getSourceDirectory().convention(generated.map(d -> d.dir("java")));
+        });
+        project.getPluginManager().withPlugin("java", plugin -> {
+            var main = project.getExtensions().getByType(JavaPluginExtension.class)
+                .getSourceSets()
+                .getByName("main");
+            main.getResources().srcDir(task.flatMap(t -> t.getLayoutFile().map(f -> f.getAsFile().getParentFile())));
+            main.getJava().srcDir(task.flatMap(PackAtlasTask::getSourceDirectory));
+        });
+    }
+}
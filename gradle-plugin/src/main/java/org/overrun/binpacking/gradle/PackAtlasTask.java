@@ -0,0 +1,242 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.overrun.binpacking.FixedPacker;
+import org.overrun.binpacking.GrowingPacker;
+import org.overrun.binpacking.ManifestReader;
+import org.overrun.binpacking.PackedLayout;
+import org.overrun.binpacking.Packer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Packs the regions listed in a manifest and emits the layout.
+ * <p>
+ * The manifest is read by {@link ManifestReader}, like the manifests of the command line
+ * packer: a {@code .json} file is an array of objects, any other file has lines of
+ * {@code id,width,height}. The task emits a {@link PackedLayout} file and, if
+ * {@link #getConstantsClass() constantsClass} is set, a Java class with the layout as constants.
+ * The task is only run again when the manifest or the configuration changes.
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+@CacheableTask
+public abstract class PackAtlasTask extends DefaultTask {
+    /**
+     * Gets the manifest file.
+     *
+     * @return the manifest file.
+     */
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getManifest();
+
+    /**
+     * Gets the packer, either {@code growing} or {@code fixed}.
+     *
+     * @return the packer.
+     */
+    @Input
+    public abstract Property<String> getPacker();
+
+    /**
+     * Gets the width of the fixed packer.
+     *
+     * @return the width.
+     */
+    @Input
+    @Optional
+    public abstract Property<Integer> getWidth();
+
+    /**
+     * Gets the height of the fixed packer.
+     *
+     * @return the height.
+     */
+    @Input
+    @Optional
+    public abstract Property<Integer> getHeight();
+
+    /**
+     * Gets whether the regions are {@linkplain Packer#sort(List) sorted} before packing.
+     *
+     * @return {@code true} to sort the regions.
+     */
+    @Input
+    public abstract Property<Boolean> getSort();
+
+    /**
+     * Gets the fully qualified name of the generated constants class.
+     *
+     * @return the class name.
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getConstantsClass();
+
+    /**
+     * Gets the emitted layout file.
+     *
+     * @return the layout file.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getLayoutFile();
+
+    /**
+     * Gets the directory of the generated sources.
+     *
+     * @return the source directory.
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getSourceDirectory();
+
+    /**
+     * Packs the manifest.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @TaskAction
+    public void pack() throws IOException {
+        var regions = ManifestReader.read(getManifest().get().getAsFile().toPath());
+        if (getSort().get()) {
+            Packer.sort(regions);
+        }
+        var packer = createPacker();
+        packer.fit(regions);
+        var layout = PackedLayout.of(packer, regions);
+
+        var layoutFile = getLayoutFile().get().getAsFile().toPath();
+        Files.createDirectories(layoutFile.getParent());
+        try (var out = new BufferedOutputStream(Files.newOutputStream(layoutFile))) {
+            layout.write(out);
+        }
+
+        var sourceDirectory = getSourceDirectory().get().getAsFile().toPath();
+        deleteContents(sourceDirectory);
+        if (getConstantsClass().isPresent()) {
+            writeConstants(sourceDirectory, getConstantsClass().get(), layout);
+        }
+    }
+
+    private Packer createPacker() {
+        return switch (getPacker().get()) {
+            case "growing" -> new GrowingPacker();
+            case "fixed" -> {
+                if (!getWidth().isPresent() || !getHeight().isPresent()) {
+                    throw new GradleException("The fixed packer requires width and height");
+                }
+                yield new FixedPacker(getWidth().get(), getHeight().get());
+            }
+            default -> throw new GradleException("Unknown packer: " + getPacker().get());
+        };
+    }
+
+    private static void deleteContents(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        try (var paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.getNameCount() - a.getNameCount())
+                .filter(p -> !p.equals(directory))
+                .forEach(p -> {
+                    try {
+                        Files.delete(p);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        }
+    }
+
+    private void writeConstants(Path directory, String className, PackedLayout layout) throws IOException {
+        int dot = className.lastIndexOf('.');
+        var packageName = dot >= 0 ? className.substring(0, dot) : "";
+        var simpleName = className.substring(dot + 1);
+        var sb = new StringBuilder(64 + layout.size() * 160);
+        sb.append("// Generated by bin-packing. Do not edit.\n");
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("/**\n * The packed layout.\n */\n");
+        sb.append("public final class ").append(simpleName).append(" {\n");
+        sb.append("    public static final int WIDTH = ").append(layout.width()).append(";\n");
+        sb.append("    public static final int HEIGHT = ").append(layout.height()).append(";\n");
+        var names = new HashSet<String>();
+        for (int i = 0; i < layout.size(); i++) {
+            var name = constantName(layout.id(i));
+            if (!names.add(name)) {
+                throw new GradleException("Duplicate constant name " + name + " for id " + layout.id(i));
+            }
+            if (!layout.fitted(i)) {
+                getLogger().warn("Region {} did not fit and has no constants", layout.id(i));
+                continue;
+            }
+            sb.append("    public static final int ").append(name).append("_X = ").append(layout.x(i)).append(";\n");
+            sb.append("    public static final int ").append(name).append("_Y = ").append(layout.y(i)).append(";\n");
+            sb.append("    public static final int ").append(name).append("_WIDTH = ").append(layout.regionWidth(i)).append(";\n");
+            sb.append("    public static final int ").append(name).append("_HEIGHT = ").append(layout.regionHeight(i)).append(";\n");
+            sb.append("    public static final boolean ").append(name).append("_ROTATED = ").append(layout.rotated(i)).append(";\n");
+        }
+        sb.append("\n    private ").append(simpleName).append("() {\n    }\n}\n");
+
+        var file = directory.resolve(className.replace('.', '/') + ".java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, sb, StandardCharsets.UTF_8);
+    }
+
+    private static String constantName(String id) {
+        var sb = new StringBuilder(id.length() + 1);
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) && c < 128 ? Character.toUpperCase(c) : '_');
+        }
+        if (sb.isEmpty() || Character.isDigit(sb.charAt(0))) {
+            sb.insert(0, '_');
+        }
+        return sb.toString().toUpperCase(Locale.ROOT);
+    }
+}
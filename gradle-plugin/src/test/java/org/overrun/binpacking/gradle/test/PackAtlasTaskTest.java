@@ -0,0 +1,76 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking.gradle.test;
+
+import org.gradle.testfixtures.ProjectBuilder;
+import org.overrun.binpacking.PackedLayout;
+import org.overrun.binpacking.gradle.BinPackingPlugin;
+import org.overrun.binpacking.gradle.PackAtlasTask;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * pack atlas task test
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class PackAtlasTaskTest {
+    public static void main(String[] args) throws IOException {
+        var directory = Files.createTempDirectory("bin-packing-plugin");
+        var project = ProjectBuilder.builder().withProjectDir(directory.toFile()).build();
+        project.getPluginManager().apply(BinPackingPlugin.class);
+        var task = (PackAtlasTask) project.getTasks().getByName("packAtlas");
+
+        // the task reads the same JSON manifests as the command line packer
+        var manifest = directory.resolve("atlas.json");
+        Files.writeString(manifest, "[{\"id\": \"grass\", \"width\": 32, \"height\": 16}, {\"id\": \"\\u0078\", \"width\": 8, \"height\": 8}]");
+        task.getManifest().set(manifest.toFile());
+        task.getConstantsClass().set("org.example.Atlas");
+        task.pack();
+        try (var in = Files.newInputStream(task.getLayoutFile().get().getAsFile().toPath())) {
+            var layout = PackedLayout.read(in);
+            if (layout.size() != 2 || layout.find("grass").isEmpty() || layout.find("x").isEmpty()) {
+                throw new AssertionError("packAtlas emitted " + layout.size() + " regions");
+            }
+        }
+        var constants = Files.readString(task.getSourceDirectory().get().getAsFile().toPath().resolve("org/example/Atlas.java"));
+        if (!constants.contains("GRASS_X") || !constants.contains("X_WIDTH = 8")) {
+            throw new AssertionError("packAtlas generated no constants:\n" + constants);
+        }
+
+        // and rejects negative sizes like it
+        manifest = directory.resolve("atlas.csv");
+        Files.writeString(manifest, "stone,16,-16\n");
+        task.getManifest().set(manifest.toFile());
+        try {
+            task.pack();
+            throw new AssertionError("packAtlas accepted a negative size");
+        } catch (IOException e) {
+            System.out.println("rejected: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import org.overrun.binpacking.internal.SizedRegion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * A packer that searches over the insertion orders and rotations of the regions
+ * with simulated annealing, using another packer to decode each candidate into a layout.
+ * <p>
+ * This packer is meant for offline builds, where spending CPU to shrink the atlas is worthwhile.
+ * In each iteration, several neighbours of the current candidate are decoded in parallel
+ * on the common fork-join pool. The search starts from the given order, so the result is
+ * never worse than fitting the regions directly with the decoder. It stops after the
+ * configured count of iterations, after the configured count of iterations without
+ * improvement, or when the {@link Deadline} expires.
+ * <p>
+ * The search is deterministic for a given {@linkplain #seed(long) seed} and
+ * {@linkplain #parallelism(int) parallelism}. If rotation is allowed, the regions placed
+ * rotated report {@link PackerFitPos#rotated()}.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var packer = new AnnealingPacker(GrowingPacker::new)
+ *     .iterations(20000)
+ *     .allowRotation(true);
+ * packer.fit(Packer.sort(regions), Deadline.after(Duration.ofMinutes(1)));
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class AnnealingPacker extends Packer {
+    private final Supplier<? extends Packer> decoder;
+    private int iterations = 1000;
+    private int stallIterations = Integer.MAX_VALUE;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean allowRotation = false;
+    private long seed = 0L;
+    private int width, height;
+
+    /**
+     * Creates a new annealing packer.
+     *
+     * @param decoder the factory that creates a new packer to decode each candidate.
+     */
+    public AnnealingPacker(Supplier<? extends Packer> decoder) {
+        this.decoder = decoder;
+    }
+
+    /**
+     * Sets the maximum count of iterations. Defaults to {@code 1000}.
+     *
+     * @param iterations the maximum count of iterations.
+     * @return this.
+     */
+    public AnnealingPacker iterations(int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * Sets the count of consecutive iterations without improvement after which the search
+     * is considered converged. Defaults to no limit.
+     *
+     * @param stallIterations the count of iterations.
+     * @return this.
+     */
+    public AnnealingPacker stallIterations(int stallIterations) {
+        this.stallIterations = stallIterations;
+        return this;
+    }
+
+    /**
+     * Sets the count of candidates decoded in parallel in each iteration.
+     * Defaults to the count of available processors.
+     *
+     * @param parallelism the count of candidates.
+     * @return this.
+     */
+    public AnnealingPacker parallelism(int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+        return this;
+    }
+
+    /**
+     * Sets whether the regions may be rotated by 90 degrees. Defaults to {@code false}.
+     *
+     * @param allowRotation {@code true} to allow rotation.
+     * @return this.
+     */
+    public AnnealingPacker allowRotation(boolean allowRotation) {
+        this.allowRotation = allowRotation;
+        return this;
+    }
+
+    /**
+     * Sets the seed of the random generator. Defaults to {@code 0}.
+     *
+     * @param seed the seed.
+     * @return this.
+     */
+    public AnnealingPacker seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    @Override
+    public void fit(List<? extends PackerRegion<?>> regions) {
+        fit(regions, Deadline.never());
+    }
+
+    /**
+     * Fits this packer with the given regions, searching until the configured limits are reached
+     * or the deadline expires.
+     *
+     * @param regions  the regions.
+     * @param deadline the deadline.
+     * @return {@code true} if the search stopped before the deadline expired.
+     */
+    @Override
+    public boolean fit(List<? extends PackerRegion<?>> regions, Deadline deadline) {
+        int size = regions.size();
+        int[] widths = new int[size];
+        int[] heights = new int[size];
+        for (int i = 0; i < size; i++) {
+            var region = regions.get(i);
+            widths[i] = region.width();
+            heights[i] = region.height();
+        }
+
+        var current = decode(widths, heights, IntStream.range(0, size).toArray(), new boolean[size]);
+        var best = current;
+        boolean completed = true;
+        if (size > 1) {
+            var random = new SplittableRandom(seed);
+            double temperature = Math.max(current.energy() * 0.05, 1.0);
+            double cooling = Math.pow(1e-3, 1.0 / Math.max(iterations, 1));
+            var neighbours = new Candidate[parallelism];
+            for (int i = 0, stall = 0; i < iterations && stall < stallIterations; i++, stall++) {
+                if (deadline.expired()) {
+                    completed = false;
+                    break;
+                }
+                for (int j = 0; j < neighbours.length; j++) {
+                    neighbours[j] = neighbour(current, random);
+                }
+                IntStream.range(0, neighbours.length).parallel().forEach(j -> {
+                    var c = neighbours[j];
+                    neighbours[j] = decode(widths, heights, c.order, c.rotated);
+                });
+                var next = neighbours[0];
+                for (int j = 1; j < neighbours.length; j++) {
+                    if (neighbours[j].energy() < next.energy()) next = neighbours[j];
+                }
+                double delta = next.energy() - current.energy();
+                if (delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature)) {
+                    current = next;
+                }
+                if (current.isBetterThan(best)) {
+                    best = current;
+                    stall = -1;
+                }
+                temperature *= cooling;
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            regions.get(i).setFit(best.fits[i]);
+        }
+        width = best.width;
+        height = best.height;
+        return completed;
+    }
+
+    private Candidate neighbour(Candidate candidate, SplittableRandom random) {
+        int[] order = candidate.order.clone();
+        boolean[] rotated = candidate.rotated;
+        int i = random.nextInt(order.length);
+        int j = random.nextInt(order.length);
+        switch (random.nextInt(allowRotation ? 3 : 2)) {
+            case 0 -> {
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+            case 1 -> {
+                int t = order[i];
+                if (i < j) System.arraycopy(order, i + 1, order, i, j - i);
+                else System.arraycopy(order, j, order, j + 1, i - j);
+                order[j] = t;
+            }
+            default -> {
+                rotated = rotated.clone();
+                rotated[order[i]] = !rotated[order[i]];
+            }
+        }
+        return new Candidate(order, rotated, null, 0, 0, 0, 0);
+    }
+
+    private Candidate decode(int[] widths, int[] heights, int[] order, boolean[] rotated) {
+        int size = order.length;
+        var proxies = new ArrayList<SizedRegion>(size);
+        for (int index : order) {
+            proxies.add(rotated[index]
+                ? new SizedRegion(heights[index], widths[index])
+                : new SizedRegion(widths[index], heights[index]));
+        }
+        var packer = decoder.get();
+        packer.fit(proxies);
+        var fits = new PackerFitPos[size];
+        int unfitted = 0;
+        long unfittedArea = 0;
+        for (int k = 0; k < size; k++) {
+            int index = order[k];
+            var fit = proxies.get(k).fit().orElse(null);
+            if (fit != null) {
+                fits[index] = PackerFitPos.of(fit.x(), fit.y(), rotated[index]);
+            } else {
+                unfitted++;
+                unfittedArea += (long) widths[index] * heights[index];
+            }
+        }
+        return new Candidate(order, rotated, fits, packer.width(), packer.height(), unfitted, unfittedArea);
+    }
+
+    private record Candidate(int[] order, boolean[] rotated, PackerFitPos[] fits,
+                             int width, int height, int unfitted, long unfittedArea) {
+        double energy() {
+            return (double) width * height + 2.0 * unfittedArea;
+        }
+
+        boolean isBetterThan(Candidate other) {
+            if (unfitted != other.unfitted) return unfitted < other.unfitted;
+            return (long) width * height < (long) other.width * other.height;
+        }
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+}
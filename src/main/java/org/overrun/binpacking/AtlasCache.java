@@ -0,0 +1,179 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import org.overrun.binpacking.internal.FreeRectList;
+
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * A cache of regions in a fixed-size atlas, keyed by user keys, that evicts the least recently
+ * used entries when the atlas is full.
+ * <p>
+ * Looking up and touching an entry takes constant time. When a new region does not fit,
+ * the least recently used entries are evicted, and their space released, until it fits.
+ * Releasing the space derives the maximal free rectangles again, in time linear in the count of entries,
+ * so entries are only evicted when no free rectangle is large enough.
+ * The eviction callback lets the caller invalidate the data of evicted entries.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var cache = new AtlasCache<Glyph>(1024, 1024, (glyph, fit) -> glyph.invalidate());
+ * var fit = cache.getOrAllocate(glyph, glyph.width(), glyph.height());
+ * }
+ * </pre>
+ *
+ * @param <K> the type of the keys.
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class AtlasCache<K> implements PackerRegionSize {
+    private final int width, height;
+    private final BiConsumer<? super K, ? super PackerFitPos> onEvict;
+    private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FreeRectList freeRects = new FreeRectList();
+
+    private record Entry(PackerFitPos fit, int width, int height) {
+    }
+
+    /**
+     * Creates a new atlas cache with the given size.
+     *
+     * @param width   the width of the atlas.
+     * @param height  the height of the atlas.
+     * @param onEvict the action performed with the key and the fit position of each evicted entry.
+     */
+    public AtlasCache(int width, int height, BiConsumer<? super K, ? super PackerFitPos> onEvict) {
+        this.width = width;
+        this.height = height;
+        this.onEvict = onEvict;
+        freeRects.reset(width, height);
+    }
+
+    /**
+     * Gets the fit position of the given key and marks it as recently used.
+     *
+     * @param key the key.
+     * @return the fit position, or empty if absent.
+     */
+    public Optional<PackerFitPos> get(K key) {
+        var entry = entries.get(key);
+        return entry != null ? Optional.of(entry.fit()) : Optional.empty();
+    }
+
+    /**
+     * Gets the fit position of the given key, or allocates a region of the given size for it,
+     * evicting the least recently used entries if needed. The key is marked as recently used.
+     * <p>
+     * If the key is present with another size, it is evicted and allocated again.
+     *
+     * @param key    the key.
+     * @param width  the width of the region.
+     * @param height the height of the region.
+     * @return the fit position.
+     * @throws IllegalArgumentException if the size is not positive or larger than the atlas.
+     */
+    public PackerFitPos getOrAllocate(K key, int width, int height) {
+        if (width <= 0 || height <= 0 || width > this.width || height > this.height) {
+            throw new IllegalArgumentException("Invalid region size " + width + "x" + height +
+                                               " for an atlas of " + this.width + "x" + this.height);
+        }
+        var entry = entries.get(key);
+        if (entry != null) {
+            if (entry.width() == width && entry.height() == height) {
+                return entry.fit();
+            }
+            evict(key);
+        }
+        int index;
+        while ((index = freeRects.findBestFit(width, height)) < 0) {
+            evict(entries.keySet().iterator().next());
+        }
+        var fit = PackerFitPos.of(freeRects.x(index), freeRects.y(index));
+        freeRects.occupy(fit.x(), fit.y(), width, height);
+        entries.put(key, new Entry(fit, width, height));
+        return fit;
+    }
+
+    /**
+     * Returns {@code true} if the given key is present. The key is not marked as recently used.
+     *
+     * @param key the key.
+     * @return {@code true} if the key is present.
+     */
+    public boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Evicts the given key and releases its space.
+     *
+     * @param key the key.
+     * @return {@code true} if the key was present.
+     */
+    public boolean evict(K key) {
+        var entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        freeRects.release(entry.fit().x(), entry.fit().y(), entry.width(), entry.height(), action ->
+            entries.values().forEach(e -> action.accept(e.fit().x(), e.fit().y(), e.width(), e.height())));
+        onEvict.accept(key, entry.fit());
+        return true;
+    }
+
+    /**
+     * Evicts all entries.
+     */
+    public void clear() {
+        for (var iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
+            var entry = iterator.next();
+            iterator.remove();
+            onEvict.accept(entry.getKey(), entry.getValue().fit());
+        }
+        freeRects.reset(width, height);
+    }
+
+    /**
+     * Gets the count of entries.
+     *
+     * @return the count of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Copies the pixels of fitted regions into a single atlas buffer.
+ * <p>
+ * The pixels of each region are read from a {@link ByteBuffer} starting at its position,
+ * with rows of {@code width * bytesPerPixel} bytes that are a given stride apart. They are
+ * copied directly into the destination at the fit position of the region, in parallel across
+ * the regions. Each copy works on its own {@linkplain ByteBuffer#duplicate() duplicate} of
+ * the buffers and uses absolute operations only, so the positions of the buffers are unchanged.
+ * <p>
+ * A {@linkplain PackerFitPos#rotated() rotated} region is copied rotated by 90 degrees clockwise,
+ * that is, the source pixel {@code (sx, sy)} goes to {@code (x + height - 1 - sy, y + sx)}.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var regions = Packer.sort(
+ *     delegate(sized(16, 16), pixelData0),
+ *     delegate(sized(32, 16), pixelData1)
+ * );
+ * var packer = new GrowingPacker();
+ * packer.fit(regions);
+ * ByteBuffer atlas = AtlasCompositor.composite(packer, regions, 4);
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class AtlasCompositor {
+    private AtlasCompositor() {
+        //no instance
+    }
+
+    /**
+     * Allocates a direct buffer with the size of the packer and copies the pixels stored
+     * in the userdata of the regions into it. The rows of the pixels are tightly packed.
+     *
+     * @param packer        the packer that fitted the regions.
+     * @param regions       the regions.
+     * @param bytesPerPixel the count of bytes per pixel.
+     * @return the atlas buffer, with rows of {@code packer.width() * bytesPerPixel} bytes.
+     */
+    public static ByteBuffer composite(Packer packer, List<? extends PackerRegion<? extends ByteBuffer>> regions, int bytesPerPixel) {
+        int stride = Math.multiplyExact(packer.width(), bytesPerPixel);
+        var atlas = ByteBuffer.allocateDirect(Math.multiplyExact(stride, packer.height()));
+        composite(regions, PackerRegion::userdata, region -> region.width() * bytesPerPixel, atlas, stride, bytesPerPixel);
+        return atlas;
+    }
+
+    /**
+     * Copies the pixels of the given regions into the destination buffer.
+     * Regions that did not fit are skipped.
+     *
+     * @param regions       the regions.
+     * @param pixels        the function that gets the pixels of a region.
+     * @param srcStride     the function that gets the count of bytes between two rows in the pixels of a region,
+     *                      which is at least {@code width * bytesPerPixel}.
+     * @param dst           the destination buffer, starting at index {@code 0}.
+     * @param dstStride     the count of bytes between two rows in the destination, including padding.
+     * @param bytesPerPixel the count of bytes per pixel.
+     * @param <R>           the type of the regions.
+     * @throws IllegalArgumentException  if the stride of a region is less than its row or its pixels are fewer than its size.
+     * @throws IndexOutOfBoundsException if a region is outside the destination.
+     */
+    public static <R extends PackerRegion<?>> void composite(List<? extends R> regions,
+                                                             Function<? super R, ? extends ByteBuffer> pixels,
+                                                             ToIntFunction<? super R> srcStride,
+                                                             ByteBuffer dst,
+                                                             int dstStride,
+                                                             int bytesPerPixel) {
+        if (bytesPerPixel <= 0) {
+            throw new IllegalArgumentException("bytesPerPixel must be positive: " + bytesPerPixel);
+        }
+        IntStream.range(0, regions.size()).parallel().forEach(i -> {
+            R region = regions.get(i);
+            region.fit().ifPresent(fit -> copy(region,
+                pixels.apply(region).duplicate(),
+                srcStride.applyAsInt(region),
+                fit,
+                dst.duplicate(),
+                dstStride,
+                bytesPerPixel));
+        });
+    }
+
+    private static void copy(PackerRegionSize region, ByteBuffer src, int srcStride, PackerFitPos fit, ByteBuffer dst, int dstStride, int bpp) {
+        int w = region.width();
+        int h = region.height();
+        if (w == 0 || h == 0) return;
+        int rowBytes = w * bpp;
+        if (srcStride < rowBytes) {
+            throw new IllegalArgumentException("Expected a stride of at least " + rowBytes + " bytes but got " + srcStride);
+        }
+        int base = src.position();
+        long size = (long) srcStride * (h - 1) + rowBytes;
+        if (src.limit() - base < size) {
+            throw new IllegalArgumentException("Expected " + size + " bytes of pixels but got " + src.remaining());
+        }
+        if (!fit.rotated()) {
+            for (int row = 0; row < h; row++) {
+                dst.put((fit.y() + row) * dstStride + fit.x() * bpp, src, base + row * srcStride, rowBytes);
+            }
+            return;
+        }
+        for (int sy = 0; sy < h; sy++) {
+            int dx = (fit.x() + h - 1 - sy) * bpp;
+            for (int sx = 0; sx < w; sx++) {
+                dst.put((fit.y() + sx) * dstStride + dx, src, base + sy * srcStride + sx * bpp, bpp);
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A packer that chooses the packer, the order and the canvas size from the statistics of the regions.
+ * <p>
+ * Before packing, one pass over the regions collects their {@linkplain Statistics statistics}:
+ * the count, the count of distinct sizes, the total area, the maximum sides, whether they are
+ * already sorted, and histograms of the sides and the aspect ratios. A cost model then predicts
+ * the time that each packer takes, and the fastest one is chosen:
+ * <ul>
+ * <li>{@link StripPacker} has the cheapest search, and is the fastest for most inputs;</li>
+ * <li>{@link FixedPacker} places runs of identical regions as grids at the lowest cost per region,
+ * and is the fastest when there are few distinct sizes, but it has to be packed again with
+ * a larger canvas when the estimated canvas is too small;</li>
+ * <li>{@link GrowingPacker} needs no canvas, and is the fastest when the regions have about
+ * the same size.</li>
+ * </ul>
+ * All packers are the densest, and the fastest, with the regions sorted by height, then width,
+ * so the regions are {@linkplain Packer#sort(List) sorted} unless they are sorted already,
+ * or {@linkplain #sort(boolean) sorting} is disabled. The sort key is fixed: the cost model does not
+ * compare other orders, such as by area or by maximum side, and only decides whether to sort.
+ * {@link BestOfPacker} tries several orders instead.
+ * The canvas is a square of the total area divided by the expected fill rate, and at least
+ * as wide as the widest region.
+ * <p>
+ * The cost model is linear in the count of regions and in the count of placements, that is,
+ * the rows that the runs of identical regions take in the canvas, times the length of the search.
+ * Its coefficients are fixed constants, which were measured once on random, run-heavy, uniform,
+ * thin, glyph-like and mixed inputs of 30 to 30,000 regions on one machine; no benchmark that
+ * reproduces them is shipped, so the predicted cost is an estimate that only ranks the packers.
+ * The {@link #decision() decision} exposes the choice and the predicted cost.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var packer = new AutoPacker();
+ * packer.fit(regions);
+ * System.out.println(packer.decision());
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class AutoPacker extends Packer {
+    /**
+     * The count of buckets of the histograms.
+     */
+    public static final int HISTOGRAM_BUCKETS = 32;
+    // the expected fill rate of the canvas
+    private static final double FILL_RATE = 0.85;
+    // the cost of a fit, of a region and of a step of the search of a placement, in nanoseconds
+    private static final double FIT_NANOS = 500;
+    private static final double SORT_NANOS = 8;
+    private static final double[] REGION_NANOS = {13, 33, 11};
+    private static final double[] SEARCH_NANOS = {10, 1.5, 6};
+    // the regions whose aspect ratio is at least 2^4 lengthen the search
+    private static final int ELONGATED_ASPECT = 4;
+    private static final double ELONGATED_SEARCH = 5;
+    private boolean sort = true;
+    private Decision decision;
+    private int width, height;
+
+    /**
+     * The packers that can be chosen.
+     */
+    public enum Engine {
+        /**
+         * {@link GrowingPacker}.
+         */
+        GROWING,
+        /**
+         * {@link StripPacker} with the width of the canvas.
+         */
+        STRIP,
+        /**
+         * {@link FixedPacker} with the size of the canvas, enlarged until all regions fit.
+         */
+        FIXED
+    }
+
+    /**
+     * The statistics of the regions.
+     *
+     * @param count           the count of regions.
+     * @param distinctSizes   the count of distinct sizes.
+     * @param totalArea       the total area of the regions.
+     * @param maxWidth        the maximum width.
+     * @param maxHeight       the maximum height.
+     * @param sorted          whether the regions are sorted by height, then width.
+     * @param placements      the estimated count of placements, that is, the rows that the runs of identical
+     *                        regions take in the canvas.
+     * @param meanWidth       the mean width of the distinct sizes.
+     * @param sideHistogram   the count of regions whose maximum side is in {@code [2^(i-1), 2^i)}
+     *                        at index {@code i}.
+     * @param aspectHistogram the count of regions whose {@code log2(width / height)} rounded down is
+     *                        {@code i - HISTOGRAM_BUCKETS / 2} at index {@code i}.
+     *                        The histograms are copied, and the accessors return copies.
+     */
+    public record Statistics(int count, int distinctSizes, long totalArea, int maxWidth, int maxHeight,
+                             boolean sorted, long placements, double meanWidth,
+                             int[] sideHistogram, int[] aspectHistogram) {
+        /**
+         * Creates the statistics, copying the histograms.
+         */
+        public Statistics {
+            sideHistogram = sideHistogram.clone();
+            aspectHistogram = aspectHistogram.clone();
+        }
+
+        @Override
+        public int[] sideHistogram() {
+            return sideHistogram.clone();
+        }
+
+        @Override
+        public int[] aspectHistogram() {
+            return aspectHistogram.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Statistics that)) return false;
+            return count == that.count && distinctSizes == that.distinctSizes && totalArea == that.totalArea &&
+                   maxWidth == that.maxWidth && maxHeight == that.maxHeight && sorted == that.sorted &&
+                   placements == that.placements && Double.compare(meanWidth, that.meanWidth) == 0 &&
+                   Arrays.equals(sideHistogram, that.sideHistogram) && Arrays.equals(aspectHistogram, that.aspectHistogram);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Integer.hashCode(count);
+            result = 31 * result + Integer.hashCode(distinctSizes);
+            result = 31 * result + Long.hashCode(totalArea);
+            result = 31 * result + Integer.hashCode(maxWidth);
+            result = 31 * result + Integer.hashCode(maxHeight);
+            result = 31 * result + Boolean.hashCode(sorted);
+            result = 31 * result + Long.hashCode(placements);
+            result = 31 * result + Double.hashCode(meanWidth);
+            result = 31 * result + Arrays.hashCode(sideHistogram);
+            result = 31 * result + Arrays.hashCode(aspectHistogram);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics[count=" + count + ", distinctSizes=" + distinctSizes + ", totalArea=" + totalArea +
+                   ", maxWidth=" + maxWidth + ", maxHeight=" + maxHeight + ", sorted=" + sorted +
+                   ", placements=" + placements + ", meanWidth=" + meanWidth +
+                   ", sideHistogram=" + Arrays.toString(sideHistogram) +
+                   ", aspectHistogram=" + Arrays.toString(aspectHistogram) + "]";
+        }
+    }
+
+    /**
+     * The decision of the packer.
+     *
+     * @param engine         the chosen packer.
+     * @param sort           whether the regions are sorted by height, then width, before packing.
+     * @param canvasWidth    the width of the canvas.
+     * @param canvasHeight   the height of the canvas, which only {@link Engine#FIXED} uses.
+     * @param predictedNanos the predicted time of the packing, in nanoseconds.
+     * @param statistics     the statistics of the regions.
+     */
+    public record Decision(Engine engine, boolean sort, int canvasWidth, int canvasHeight,
+                           long predictedNanos, Statistics statistics) {
+    }
+
+    /**
+     * Creates a new auto packer.
+     */
+    public AutoPacker() {
+    }
+
+    /**
+     * Sets whether the regions may be sorted before packing. Defaults to {@code true}.
+     * <p>
+     * When disabled, the regions are packed in the given order, which is usually less dense.
+     *
+     * @param sort {@code true} to allow sorting.
+     * @return this.
+     */
+    public AutoPacker sort(boolean sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    /**
+     * Collects the statistics of the given regions and decides how to pack them, without packing.
+     *
+     * @param regions the regions.
+     * @return the decision.
+     */
+    public static Decision plan(List<? extends PackerRegion<?>> regions) {
+        return plan(regions, true);
+    }
+
+    private static Decision plan(List<? extends PackerRegion<?>> regions, boolean allowSort) {
+        int count = regions.size();
+        var sideHistogram = new int[HISTOGRAM_BUCKETS];
+        var aspectHistogram = new int[HISTOGRAM_BUCKETS];
+        // the distinct sizes with their counts, in an open addressing table
+        int capacity = 64;
+        var keys = new long[capacity];
+        var counts = new int[capacity];
+        int distinct = 0;
+        long totalArea = 0;
+        int maxWidth = 0, maxHeight = 0;
+        boolean sorted = true;
+        int prevWidth = Integer.MAX_VALUE, prevHeight = Integer.MAX_VALUE, run = 0;
+        for (int i = 0; i <= count; i++) {
+            int w = i < count ? regions.get(i).width() : -1;
+            int h = i < count ? regions.get(i).height() : -1;
+            if (w == prevWidth && h == prevHeight) {
+                run++;
+                continue;
+            }
+            if (run > 0) {
+                // a run of identical regions is added to the table at once
+                // the key is never 0, which marks an empty slot
+                long key = ((long) prevWidth << 32 | prevHeight) + 1;
+                int slot = slot(key, capacity);
+                while (keys[slot] != 0 && keys[slot] != key) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                if (keys[slot] == 0) {
+                    keys[slot] = key;
+                    if (++distinct * 2 > capacity) {
+                        // keep the load factor at most 1/2
+                        var oldKeys = keys;
+                        var oldCounts = counts;
+                        capacity *= 2;
+                        keys = new long[capacity];
+                        counts = new int[capacity];
+                        for (int j = 0; j < oldKeys.length; j++) {
+                            if (oldKeys[j] == 0) continue;
+                            int newSlot = slot(oldKeys[j], capacity);
+                            while (keys[newSlot] != 0) {
+                                newSlot = (newSlot + 1) & (capacity - 1);
+                            }
+                            keys[newSlot] = oldKeys[j];
+                            counts[newSlot] = oldCounts[j];
+                            if (oldKeys[j] == key) slot = newSlot;
+                        }
+                    }
+                }
+                counts[slot] += run;
+                totalArea += (long) prevWidth * prevHeight * run;
+            }
+            if (i == count) break;
+            maxWidth = Math.max(maxWidth, w);
+            maxHeight = Math.max(maxHeight, h);
+            if (h > prevHeight || (h == prevHeight && w > prevWidth)) sorted = false;
+            prevWidth = w;
+            prevHeight = h;
+            run = 1;
+        }
+        // the histograms are the same for each region of a distinct size
+        for (int slot = 0; slot < capacity; slot++) {
+            if (keys[slot] == 0) continue;
+            int w = (int) ((keys[slot] - 1) >>> 32);
+            int h = (int) (keys[slot] - 1);
+            sideHistogram[32 - Integer.numberOfLeadingZeros(Math.max(w, h))] += counts[slot];
+            if (w > 0 && h > 0) {
+                int aspect = w >= h
+                    ? 31 - Integer.numberOfLeadingZeros(w / h)
+                    : -(32 - Integer.numberOfLeadingZeros((h - 1) / w));
+                aspectHistogram[Math.max(Math.min(aspect + HISTOGRAM_BUCKETS / 2, HISTOGRAM_BUCKETS - 1), 0)] += counts[slot];
+            }
+        }
+
+        long side = Math.max((long) Math.ceil(Math.sqrt(totalArea / FILL_RATE)), Math.max(Math.max(maxWidth, maxHeight), 1));
+        int canvas = (int) Math.min(side, Integer.MAX_VALUE);
+        // a run of identical regions takes about one row of the canvas for each width of the canvas
+        long placements = 0;
+        double widthSum = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (keys[slot] == 0) continue;
+            long w = (keys[slot] - 1) >>> 32;
+            widthSum += w;
+            placements += Math.max((counts[slot] * w + canvas - 1) / canvas, 1);
+        }
+        double meanWidth = distinct > 0 ? widthSum / distinct : 0;
+        var statistics = new Statistics(count, distinct, totalArea, maxWidth, maxHeight, sorted, placements, meanWidth,
+            sideHistogram, aspectHistogram);
+
+        // the search visits about the count of regions of the mean width that fit in a row,
+        // and several times more among the fragments left by elongated regions
+        int elongated = 0;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            if (Math.abs(i - HISTOGRAM_BUCKETS / 2) >= ELONGATED_ASPECT) elongated += aspectHistogram[i];
+        }
+        double search = (meanWidth > 0 ? canvas / meanWidth : 1)
+                        * (1 + ELONGATED_SEARCH * elongated / Math.max(count, 1));
+        boolean sort = allowSort && !sorted;
+        double fixed = FIT_NANOS + (!sort ? 0 : SORT_NANOS * count * (64 - Long.numberOfLeadingZeros(count)));
+        Engine best = null;
+        double bestNanos = Double.POSITIVE_INFINITY;
+        for (var engine : Engine.values()) {
+            int i = engine.ordinal();
+            double nanos = REGION_NANOS[i] * count + SEARCH_NANOS[i] * placements * search;
+            if (engine == Engine.FIXED) {
+                // the estimated canvas is too small more often with fewer regions
+                nanos *= 1 + 16 / Math.sqrt(Math.max(count, 1));
+            }
+            if (nanos < bestNanos) {
+                best = engine;
+                bestNanos = nanos;
+            }
+        }
+        return new Decision(best, sort, canvas, canvas, (long) (fixed + bestNanos), statistics);
+    }
+
+    @Override
+    public void fit(List<? extends PackerRegion<?>> regions) {
+        var decision = plan(regions, sort);
+        this.decision = decision;
+        List<? extends PackerRegion<?>> list = regions;
+        if (decision.sort()) {
+            var sorted = new ArrayList<PackerRegion<?>>(regions);
+            sorted.sort(null);
+            list = sorted;
+        }
+        switch (decision.engine()) {
+            case GROWING -> new GrowingPacker().fit(list);
+            case STRIP -> new StripPacker(decision.canvasWidth()).fit(list);
+            case FIXED -> {
+                long w = decision.canvasWidth(), h = decision.canvasHeight();
+                while (true) {
+                    // the regions that do not fit are left unchanged
+                    for (var region : list) {
+                        region.setFit(null);
+                    }
+                    new FixedPacker((int) w, (int) h).fit(list);
+                    if ((w >= Integer.MAX_VALUE && h >= Integer.MAX_VALUE) || allFit(list)) break;
+                    // enlarge the estimate
+                    w = Math.min(w + Math.max(w >>> 3, 1), Integer.MAX_VALUE);
+                    h = Math.min(h + Math.max(h >>> 3, 1), Integer.MAX_VALUE);
+                }
+            }
+        }
+        // the atlas is the bounding box of the regions
+        width = 0;
+        height = 0;
+        for (var region : list) {
+            var fit = region.fit().orElse(null);
+            if (fit == null) continue;
+            boolean rotated = fit.rotated();
+            width = Math.max(width, fit.x() + (rotated ? region.height() : region.width()));
+            height = Math.max(height, fit.y() + (rotated ? region.width() : region.height()));
+        }
+    }
+
+    private static int slot(long key, int capacity) {
+        return (int) (key * 0x9E3779B97F4A7C15L >>> 33) & (capacity - 1);
+    }
+
+    private static boolean allFit(List<? extends PackerRegion<?>> regions) {
+        for (var region : regions) {
+            if (region.fit().isEmpty()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the decision of the last fit.
+     *
+     * @return the decision, or {@code null} if this packer was not fitted.
+     */
+    public Decision decision() {
+        return decision;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A packer that runs another packer with several orders of the regions and keeps the best layout.
+ * <p>
+ * The regions are first fitted in the given order, which is the cheap fallback that
+ * always completes. Then they are fitted again sorted by the maximum side, the area, the width
+ * and the height, as long as the {@link Deadline} allows. A layout is better than another
+ * if it fits more regions, or the same count of regions in a smaller area.
+ * <p>
+ * Each attempt is timed, and the next attempt is only started if the remaining time is at least
+ * as long as the last attempt took. The packers themselves are not interrupted, so the overrun
+ * is bounded as follows: the fallback always runs, even if the deadline has already expired,
+ * and a later attempt overruns the deadline only if it takes longer than the attempt before it.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var packer = new BestOfPacker(GrowingPacker::new);
+ * boolean completed = packer.fit(regions, Deadline.after(Duration.ofMillis(4)));
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class BestOfPacker extends Packer {
+    private static final List<Comparator<PackerRegionSize>> ORDERS = List.of(
+        Comparator.<PackerRegionSize>comparingInt(r -> Math.max(r.width(), r.height()))
+            .thenComparingInt(r -> Math.min(r.width(), r.height()))
+            .reversed(),
+        Comparator.<PackerRegionSize>comparingLong(r -> (long) r.width() * r.height())
+            .thenComparingInt(PackerRegionSize::height)
+            .reversed(),
+        Comparator.comparingInt(PackerRegionSize::width)
+            .thenComparingInt(PackerRegionSize::height)
+            .reversed(),
+        Comparator.comparingInt(PackerRegionSize::height)
+            .thenComparingInt(PackerRegionSize::width)
+            .reversed()
+    );
+    private final Supplier<? extends Packer> factory;
+    private int width, height;
+
+    /**
+     * Creates a new best-of packer.
+     *
+     * @param factory the factory that creates a new packer for each attempt.
+     */
+    public BestOfPacker(Supplier<? extends Packer> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Fits this packer with the given regions, trying all orders.
+     *
+     * @param regions the regions.
+     */
+    @Override
+    public void fit(List<? extends PackerRegion<?>> regions) {
+        fit(regions, Deadline.never());
+    }
+
+    /**
+     * Fits this packer with the given regions, trying the orders until the deadline expires.
+     * <p>
+     * The regions are always fitted with the best layout found: the fallback in the given order
+     * runs even if the deadline has already expired. A later attempt is skipped when the remaining
+     * time is shorter than the last attempt took.
+     *
+     * @param regions  the regions.
+     * @param deadline the deadline.
+     * @return {@code true} if all orders were tried before the deadline expired.
+     */
+    @Override
+    public boolean fit(List<? extends PackerRegion<?>> regions, Deadline deadline) {
+        int size = regions.size();
+        var best = new PackerFitPos[size];
+        long start = System.nanoTime();
+        var packer = factory.get();
+        clearFits(regions);
+        packer.fit(regions);
+        int bestCount = saveFits(regions, best);
+        long bestArea = (long) packer.width() * packer.height();
+        width = packer.width();
+        height = packer.height();
+
+        boolean completed = true;
+        var order = new ArrayList<PackerRegion<?>>(regions);
+        long lastNanos = System.nanoTime() - start;
+        for (var comparator : ORDERS) {
+            // skip the attempt if it would likely overrun the deadline
+            if (deadline.remainingNanos() < lastNanos) {
+                completed = false;
+                break;
+            }
+            long attemptStart = System.nanoTime();
+            order.sort(comparator);
+            packer = factory.get();
+            clearFits(regions);
+            packer.fit(order);
+            lastNanos = System.nanoTime() - attemptStart;
+            int count = countFits(regions);
+            long area = (long) packer.width() * packer.height();
+            if (count > bestCount || (count == bestCount && area < bestArea)) {
+                bestCount = saveFits(regions, best);
+                bestArea = area;
+                width = packer.width();
+                height = packer.height();
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            regions.get(i).setFit(best[i]);
+        }
+        return completed;
+    }
+
+    /**
+     * Clears the fits of the previous attempt, because packers with a fixed canvas leave the regions
+     * that do not fit unchanged.
+     */
+    private static void clearFits(List<? extends PackerRegion<?>> regions) {
+        for (var region : regions) {
+            region.setFit(null);
+        }
+    }
+
+    private static int saveFits(List<? extends PackerRegion<?>> regions, PackerFitPos[] fits) {
+        int count = 0;
+        for (int i = 0, size = regions.size(); i < size; i++) {
+            var fit = regions.get(i).fit().orElse(null);
+            if (fit != null) count++;
+            fits[i] = fit;
+        }
+        return count;
+    }
+
+    private static int countFits(List<? extends PackerRegion<?>> regions) {
+        int count = 0;
+        for (var region : regions) {
+            if (region.fit().isPresent()) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+}
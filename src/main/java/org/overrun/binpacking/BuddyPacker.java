@@ -0,0 +1,219 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A quadtree buddy allocator for square, power-of-two blocks, such as shadow map tiles
+ * and lightmap pages.
+ * <p>
+ * Each region gets the smallest block whose side is a power-of-two multiple of the minimum block
+ * size and not less than the larger side of the region. A block is split into four buddies when a
+ * smaller block is needed, and the four buddies are merged again when all of them are free.
+ * Both allocation and {@linkplain #release(PackerRegion) release} take {@code O(log n)} steps.
+ * <p>
+ * The quadtree is not made of objects: each node is one byte that holds the order of the largest
+ * free block below it, and a bitmap marks the allocated blocks.
+ * <p>
+ * Like {@link FixedPacker}, this packer keeps its state across fits, and regions that do not fit
+ * are left unchanged. Empty regions are fitted at {@code (0, 0)} and occupy no block.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var packer = new BuddyPacker(4096, 64);
+ * packer.fit(List.of(shadowTile));
+ * // ...
+ * packer.release(shadowTile);
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class BuddyPacker extends Packer {
+    private static final int MAX_DEPTH = 12;
+    private final int size, minBlock, depth;
+    // the quadtree in breadth-first order, the children of i are 4i+1..4i+4;
+    // each byte is 1 + the order of the largest free block in the subtree, or 0 if none
+    private final byte[] tree;
+    // the nodes that are allocated as a block
+    private final long[] allocated;
+
+    /**
+     * Creates a new buddy packer with the given size and minimum block size.
+     *
+     * @param size     the width and height, a power of two.
+     * @param minBlock the side of the smallest block, a power of two not greater than the size.
+     * @throws IllegalArgumentException if the sizes are not powers of two, or if the quadtree would
+     *                                  have more than {@value #MAX_DEPTH} levels below the root.
+     */
+    public BuddyPacker(int size, int minBlock) {
+        if (Integer.bitCount(size) != 1 || Integer.bitCount(minBlock) != 1 || minBlock > size) {
+            throw new IllegalArgumentException("Invalid sizes: " + size + ", " + minBlock);
+        }
+        this.size = size;
+        this.minBlock = minBlock;
+        this.depth = Integer.numberOfTrailingZeros(size) - Integer.numberOfTrailingZeros(minBlock);
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Too many levels: " + size + " / " + minBlock + " needs " + depth + " > " + MAX_DEPTH);
+        }
+        int nodes = ((1 << (2 * depth + 2)) - 1) / 3;
+        this.tree = new byte[nodes];
+        this.allocated = new long[(nodes + 63) >>> 6];
+        // all blocks are free: every node of a level holds the order of the level
+        for (int level = 0, first = 0; level <= depth; level++) {
+            int count = 1 << (2 * level);
+            Arrays.fill(tree, first, first + count, (byte) (depth - level + 1));
+            first += count;
+        }
+    }
+
+    @Override
+    public void fit(List<? extends PackerRegion<?>> regions) {
+        for (var region : regions) {
+            int w = region.width();
+            int h = region.height();
+            if (w <= 0 || h <= 0) {
+                region.setFit(PackerFitPos.of(0, 0));
+                continue;
+            }
+            int order = orderOf(w, h);
+            if (order < 0 || tree[0] < order + 1) {
+                continue;
+            }
+            region.setFit(allocate(order));
+        }
+    }
+
+    /**
+     * Releases the block of the given fitted region, and merges it with its free buddies.
+     * The fit position of the region is not changed.
+     *
+     * @param region the region.
+     * @throws IllegalArgumentException if the region does not hold a block of this packer.
+     */
+    public void release(PackerRegion<?> region) {
+        var fit = region.fit().orElseThrow(() -> new IllegalArgumentException("Region is not fitted: " + region));
+        int w = region.width();
+        int h = region.height();
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        int order = orderOf(w, h);
+        int side = minBlock << order;
+        int x = fit.x(), y = fit.y();
+        if (order < 0 || x < 0 || y < 0 || x >= size || y >= size || (x & (side - 1)) != 0 || (y & (side - 1)) != 0) {
+            throw new IllegalArgumentException("Region does not hold a block: " + region);
+        }
+        // descend by the position to the level of the order
+        int node = 0;
+        for (int half = size >>> 1; half >= side; half >>>= 1) {
+            node = 4 * node + 1 + ((x & half) != 0 ? 1 : 0) + ((y & half) != 0 ? 2 : 0);
+        }
+        if ((allocated[node >>> 6] & (1L << node)) == 0) {
+            throw new IllegalArgumentException("Region does not hold a block: " + region);
+        }
+        allocated[node >>> 6] &= ~(1L << node);
+        tree[node] = (byte) (order + 1);
+        updateAncestors(node, order);
+    }
+
+    /**
+     * Gets the side of the largest free block.
+     *
+     * @return the side of the largest free block, or {@code 0} if no block is free.
+     */
+    public int largestFreeBlock() {
+        return tree[0] > 0 ? minBlock << (tree[0] - 1) : 0;
+    }
+
+    private PackerFitPos allocate(int order) {
+        int node = 0, x = 0, y = 0;
+        for (int nodeOrder = depth; nodeOrder > order; nodeOrder--) {
+            int child = 4 * node + 1;
+            // the first child with a large enough free block, which exists by the parent's value
+            while (tree[child] < order + 1) child++;
+            int quadrant = child - (4 * node + 1);
+            int half = minBlock << (nodeOrder - 1);
+            if ((quadrant & 1) != 0) x += half;
+            if ((quadrant & 2) != 0) y += half;
+            node = child;
+        }
+        tree[node] = 0;
+        allocated[node >>> 6] |= 1L << node;
+        updateAncestors(node, order);
+        return PackerFitPos.of(x, y);
+    }
+
+    private void updateAncestors(int node, int order) {
+        while (node > 0) {
+            int parent = (node - 1) >>> 2;
+            order++;
+            int child = 4 * parent + 1;
+            int a = tree[child], b = tree[child + 1], c = tree[child + 2], d = tree[child + 3];
+            // four free buddies merge into one free block
+            int value = a == order && b == order && c == order && d == order
+                ? order + 1
+                : Math.max(Math.max(a, b), Math.max(c, d));
+            if (tree[parent] == value) {
+                break;
+            }
+            tree[parent] = (byte) value;
+            node = parent;
+        }
+    }
+
+    /**
+     * Gets the order of the block for the given size.
+     *
+     * @return the order, or {@code -1} if the size is larger than this packer.
+     */
+    private int orderOf(int w, int h) {
+        int side = Math.max(w, h);
+        if (side > size) {
+            return -1;
+        }
+        int order = 0;
+        while ((minBlock << order) < side) order++;
+        return order;
+    }
+
+    @Override
+    public boolean incremental() {
+        return true;
+    }
+
+    @Override
+    public int width() {
+        return size;
+    }
+
+    @Override
+    public int height() {
+        return size;
+    }
+}
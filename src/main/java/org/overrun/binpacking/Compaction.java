@@ -0,0 +1,279 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import org.overrun.binpacking.internal.FreeRectList;
+import org.overrun.binpacking.internal.SizedRegion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compacts the regions of a fragmented atlas into less space with few moves.
+ * <p>
+ * The compaction first estimates a smaller target size by packing all regions from scratch.
+ * The regions that are already inside the target stay in place, and only the others are moved
+ * into the free space of the target. If they do not fit, the target is enlarged step by step up
+ * to the original size, where no region has to move.
+ * <p>
+ * The destination of a move never overlaps the old position of any region, so the moves
+ * can be applied in place and in any order. The work can be spread across frames by
+ * calling {@link #step(Deadline)} until it returns {@code true}.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var compaction = new Compaction(atlasWidth, atlasHeight, liveRegions);
+ * // once per frame
+ * if (compaction.step(Deadline.after(Duration.ofMillis(2)))) {
+ *     compaction.moves().forEach(move -> CopyTexSubImage(move.from(), move.to(), move.region()));
+ *     compaction.apply();
+ * }
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class Compaction {
+    private static final int PHASE_TARGET = 0, PHASE_SEED = 1, PHASE_PLACE = 2, PHASE_DONE = 3;
+    private static final int CHECK_INTERVAL = 32;
+    private final int width, height;
+    private final List<PackerRegion<?>> regions = new ArrayList<>();
+    private final List<PackerFitPos> fits = new ArrayList<>();
+    private final int[] ws, hs;
+    private final FreeRectList freeRects = new FreeRectList();
+    private final List<Integer> evicted = new ArrayList<>();
+    private final List<Move> moves = new ArrayList<>();
+    private int targetWidth, targetHeight;
+    private int phase = PHASE_TARGET;
+    private int cursor;
+
+    /**
+     * A move of a region.
+     *
+     * @param region the region.
+     * @param from   the old fit position.
+     * @param to     the new fit position.
+     */
+    public record Move(PackerRegion<?> region, PackerFitPos from, PackerFitPos to) {
+    }
+
+    /**
+     * Creates a compaction of the fitted regions in the given bounds.
+     * Regions that did not fit are ignored.
+     *
+     * @param width   the width of the atlas.
+     * @param height  the height of the atlas.
+     * @param regions the live regions.
+     * @throws IllegalArgumentException if a region is outside the bounds.
+     */
+    public Compaction(int width, int height, List<? extends PackerRegion<?>> regions) {
+        this.width = width;
+        this.height = height;
+        for (var region : regions) {
+            region.fit().ifPresent(fit -> {
+                this.regions.add(region);
+                fits.add(fit);
+            });
+        }
+        int size = this.regions.size();
+        ws = new int[size];
+        hs = new int[size];
+        for (int i = 0; i < size; i++) {
+            var region = this.regions.get(i);
+            var fit = fits.get(i);
+            ws[i] = fit.rotated() ? region.height() : region.width();
+            hs[i] = fit.rotated() ? region.width() : region.height();
+            if (fit.x() < 0 || fit.y() < 0 || (long) fit.x() + ws[i] > width || (long) fit.y() + hs[i] > height) {
+                throw new IllegalArgumentException("Region " + region + " is outside the bounds " + width + "x" + height);
+            }
+        }
+    }
+
+    /**
+     * Runs the compaction until it is done or the deadline expires.
+     *
+     * @param deadline the deadline.
+     * @return {@code true} if the compaction is done.
+     */
+    public boolean step(Deadline deadline) {
+        int size = regions.size();
+        while (phase != PHASE_DONE) {
+            if (deadline.expired()) {
+                return false;
+            }
+            switch (phase) {
+                case PHASE_TARGET -> {
+                    var proxies = new ArrayList<SizedRegion>(size);
+                    for (int i = 0; i < size; i++) {
+                        proxies.add(new SizedRegion(ws[i], hs[i]));
+                    }
+                    var packer = new GrowingPacker();
+                    packer.fit(Packer.sort(proxies));
+                    targetWidth = Math.min(packer.width(), width);
+                    targetHeight = Math.min(packer.height(), height);
+                    startSeed();
+                }
+                case PHASE_SEED -> {
+                    for (int end = Math.min(cursor + CHECK_INTERVAL, size); cursor < end; cursor++) {
+                        seed(cursor);
+                    }
+                    if (cursor == size) {
+                        evicted.sort((a, b) -> Long.compare((long) ws[b] * hs[b], (long) ws[a] * hs[a]));
+                        cursor = 0;
+                        phase = PHASE_PLACE;
+                    }
+                }
+                case PHASE_PLACE -> {
+                    for (int end = Math.min(cursor + CHECK_INTERVAL, evicted.size()); cursor < end; cursor++) {
+                        if (!place(evicted.get(cursor))) {
+                            // enlarge the target, the original size always succeeds
+                            targetWidth = (int) Math.min((long) targetWidth + Math.max(targetWidth >>> 3, 1), width);
+                            targetHeight = (int) Math.min((long) targetHeight + Math.max(targetHeight >>> 3, 1), height);
+                            startSeed();
+                            break;
+                        }
+                    }
+                    if (phase == PHASE_PLACE && cursor == evicted.size()) {
+                        phase = PHASE_DONE;
+                    }
+                }
+                default -> throw new IllegalStateException("Unexpected phase: " + phase);
+            }
+        }
+        return true;
+    }
+
+    private void startSeed() {
+        freeRects.reset(targetWidth, targetHeight);
+        evicted.clear();
+        moves.clear();
+        cursor = 0;
+        phase = PHASE_SEED;
+    }
+
+    private void seed(int i) {
+        var fit = fits.get(i);
+        int x = fit.x(), y = fit.y(), w = ws[i], h = hs[i];
+        if (x + w > targetWidth || y + h > targetHeight) {
+            evicted.add(i);
+        }
+        // the part inside the target stays occupied until the region is moved
+        int cw = Math.min(x + w, targetWidth) - x;
+        int ch = Math.min(y + h, targetHeight) - y;
+        if (cw > 0 && ch > 0) {
+            freeRects.occupy(x, y, cw, ch);
+        }
+    }
+
+    private boolean place(int i) {
+        int index = freeRects.findBestFit(ws[i], hs[i]);
+        if (index < 0) {
+            return false;
+        }
+        int x = freeRects.x(index);
+        int y = freeRects.y(index);
+        freeRects.occupy(x, y, ws[i], hs[i]);
+        var from = fits.get(i);
+        moves.add(new Move(regions.get(i), from, PackerFitPos.of(x, y, from.rotated())));
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the compaction is done.
+     *
+     * @return {@code true} if the compaction is done.
+     */
+    public boolean done() {
+        return phase == PHASE_DONE;
+    }
+
+    /**
+     * Gets the moves of the compaction.
+     *
+     * @return the moves.
+     * @throws IllegalStateException if the compaction is not done.
+     */
+    public List<Move> moves() {
+        checkDone();
+        return Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * Gets the count of pixels moved by the compaction.
+     *
+     * @return the count of moved pixels.
+     * @throws IllegalStateException if the compaction is not done.
+     */
+    public long movedPixels() {
+        checkDone();
+        long pixels = 0;
+        for (var move : moves) {
+            pixels += (long) move.region().width() * move.region().height();
+        }
+        return pixels;
+    }
+
+    /**
+     * Sets the new fit positions of the moved regions.
+     *
+     * @throws IllegalStateException if the compaction is not done.
+     */
+    public void apply() {
+        checkDone();
+        for (var move : moves) {
+            move.region().setFit(move.to());
+        }
+    }
+
+    /**
+     * Gets the width of the compacted atlas.
+     *
+     * @return the width.
+     * @throws IllegalStateException if the compaction is not done.
+     */
+    public int width() {
+        checkDone();
+        return targetWidth;
+    }
+
+    /**
+     * Gets the height of the compacted atlas.
+     *
+     * @return the height.
+     * @throws IllegalStateException if the compaction is not done.
+     */
+    public int height() {
+        checkDone();
+        return targetHeight;
+    }
+
+    private void checkDone() {
+        if (phase != PHASE_DONE) {
+            throw new IllegalStateException("The compaction is not done");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.time.Duration;
+
+/**
+ * A point in time after which a packer should stop searching for a better layout.
+ * <p>
+ * Deadlines are based on {@link System#nanoTime()}.
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class Deadline {
+    private static final Deadline NEVER = new Deadline(0L, false);
+    private final long nanoTime;
+    private final boolean bounded;
+
+    private Deadline(long nanoTime, boolean bounded) {
+        this.nanoTime = nanoTime;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Creates a deadline that expires after the given time budget from now.
+     *
+     * @param budget the time budget.
+     * @return the deadline.
+     */
+    public static Deadline after(Duration budget) {
+        long now = System.nanoTime();
+        long nanos;
+        try {
+            nanos = budget.toNanos();
+        } catch (ArithmeticException e) {
+            return budget.isNegative() ? new Deadline(now, true) : NEVER;
+        }
+        if (nanos > 0 && now + nanos < now) {
+            return NEVER;
+        }
+        return new Deadline(now + Math.max(nanos, 0L), true);
+    }
+
+    /**
+     * Gets the deadline that never expires.
+     *
+     * @return the deadline.
+     */
+    public static Deadline never() {
+        return NEVER;
+    }
+
+    /**
+     * Returns {@code true} if this deadline has expired.
+     *
+     * @return {@code true} if this deadline has expired.
+     */
+    public boolean expired() {
+        return bounded && System.nanoTime() - nanoTime >= 0;
+    }
+
+    /**
+     * Gets the remaining time before this deadline expires.
+     *
+     * @return the remaining time in nanoseconds, {@code 0} if expired, or {@link Long#MAX_VALUE} if it never expires.
+     */
+    public long remainingNanos() {
+        if (!bounded) return Long.MAX_VALUE;
+        return Math.max(nanoTime - System.nanoTime(), 0L);
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? "Deadline[remaining=" + remainingNanos() + "ns]" : "Deadline[never]";
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A packer that packs only one region for each group of identical regions and shares its
+ * fit position with the others.
+ * <p>
+ * Two regions are identical if they have the same size and equal content keys.
+ * The content key is computed from the userdata, for example a hash of the pixels.
+ * Regions whose content key is {@code null} are never grouped.
+ * <p>
+ * The first region of each group, in the given order, is the one that is packed.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var packer = new DedupPacker(new GrowingPacker(), userdata -> ((Sprite) userdata).contentHash());
+ * packer.fit(regions);
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class DedupPacker extends Packer {
+    private final Packer packer;
+    private final Function<Object, ?> contentKey;
+    private int uniqueCount;
+
+    /**
+     * Creates a new deduplicating packer.
+     *
+     * @param packer     the packer that packs the unique regions.
+     * @param contentKey the function that computes the content key from the userdata.
+     */
+    public DedupPacker(Packer packer, Function<Object, ?> contentKey) {
+        this.packer = packer;
+        this.contentKey = contentKey;
+    }
+
+    /**
+     * Creates a new deduplicating packer that uses the userdata as the content key.
+     *
+     * @param packer the packer that packs the unique regions.
+     */
+    public DedupPacker(Packer packer) {
+        this(packer, Function.identity());
+    }
+
+    @Override
+    public void fit(List<? extends PackerRegion<?>> regions) {
+        fit(regions, Deadline.never());
+    }
+
+    @Override
+    public boolean fit(List<? extends PackerRegion<?>> regions, Deadline deadline) {
+        int size = regions.size();
+        var groups = new HashMap<Key, PackerRegion<?>>(size * 4 / 3 + 1);
+        var unique = new ArrayList<PackerRegion<?>>(size);
+        var representatives = new PackerRegion<?>[size];
+        for (int i = 0; i < size; i++) {
+            var region = regions.get(i);
+            var content = region.userdata() != null ? contentKey.apply(region.userdata()) : null;
+            var representative = region;
+            if (content != null) {
+                representative = groups.putIfAbsent(new Key(region.width(), region.height(), content), region);
+                if (representative == null) representative = region;
+            }
+            if (representative == region) unique.add(region);
+            representatives[i] = representative;
+        }
+        uniqueCount = unique.size();
+        boolean completed = packer.fit(unique, deadline);
+        for (int i = 0; i < size; i++) {
+            var region = regions.get(i);
+            if (representatives[i] != region) {
+                region.setFit(representatives[i].fit().orElse(null));
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Gets the count of unique regions packed by the last fit.
+     *
+     * @return the count of unique regions.
+     */
+    public int uniqueCount() {
+        return uniqueCount;
+    }
+
+    /**
+     * Returns whether the delegate packer fits incrementally. Regions are only deduplicated within a fit.
+     *
+     * @return {@code true} if the delegate packer fits incrementally.
+     */
+    @Override
+    public boolean incremental() {
+        return packer.incremental();
+    }
+
+    @Override
+    public int width() {
+        return packer.width();
+    }
+
+    @Override
+    public int height() {
+        return packer.height();
+    }
+
+    private record Key(int width, int height, Object content) {
+    }
+}
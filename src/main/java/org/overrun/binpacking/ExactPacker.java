@@ -0,0 +1,487 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * An exact packer that finds the bounding box with the smallest area, for small sets of regions
+ * such as HUD icons and cursors. The regions are not rotated.
+ * <p>
+ * The packer starts from the layout of a {@link BestOfPacker} of {@link GrowingPacker}s, then
+ * tries the boxes with a smaller area in increasing order of area. A box is tried by branch and
+ * bound: the first free cell is either the top-left corner of a region, or left empty as long as
+ * the empty cells do not exceed the free area of the box. Identical regions are placed in a fixed
+ * order, boxes that cannot be better are skipped by their area, and failed states are memoized.
+ * A state is pruned if the cells that no subset of the unplaced regions can cover, counted by rows or by
+ * columns, exceed the free area.
+ * The subtrees of the first region are explored in parallel.
+ * <p>
+ * The coordinates are divided by the greatest common divisor of the widths and the heights,
+ * which keeps the search exact. The search stops when the {@link Deadline} expires and keeps the
+ * best layout found; {@link #optimal()} tells whether it was proven optimal. The search is
+ * exponential, so it is intended for up to about 40 regions.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var packer = new ExactPacker();
+ * packer.fit(cursorRegions, Deadline.after(Duration.ofSeconds(2)));
+ * if (!packer.optimal()) log("cursor atlas may not be optimal");
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class ExactPacker extends Packer {
+    /**
+     * The maximum count of non-empty regions.
+     */
+    public static final int MAX_REGIONS = Long.SIZE;
+    // the memoized states of a box may hold at most this many ints
+    private static final long MEMO_BUDGET = 1L << 24;
+    private boolean parallel = true;
+    private boolean optimal;
+    private int width, height;
+
+    /**
+     * Creates a new exact packer.
+     */
+    public ExactPacker() {
+    }
+
+    /**
+     * Sets whether the subtrees are explored in parallel. Defaults to {@code true}.
+     *
+     * @param parallel {@code true} to explore in parallel.
+     * @return this.
+     */
+    public ExactPacker parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Fits this packer with the given regions, searching until the smallest box is proven.
+     *
+     * @param regions the regions.
+     * @throws IllegalArgumentException if there are more than {@value #MAX_REGIONS} non-empty regions.
+     */
+    @Override
+    public void fit(List<? extends PackerRegion<?>> regions) {
+        fit(regions, Deadline.never());
+    }
+
+    /**
+     * Fits this packer with the given regions, searching until the smallest box is proven
+     * or the deadline expires.
+     * <p>
+     * The regions are always fitted with the best layout found.
+     *
+     * @param regions  the regions.
+     * @param deadline the deadline.
+     * @return {@code true} if the layout is {@linkplain #optimal() proven optimal}.
+     * @throws IllegalArgumentException if there are more than {@value #MAX_REGIONS} non-empty regions.
+     */
+    @Override
+    public boolean fit(List<? extends PackerRegion<?>> regions, Deadline deadline) {
+        // the empty regions occupy nothing and are left out of the search
+        var nonEmpty = new ArrayList<PackerRegion<?>>(regions.size());
+        for (var region : regions) {
+            if (region.width() > 0 && region.height() > 0) {
+                nonEmpty.add(region);
+            } else {
+                region.setFit(PackerFitPos.of(0, 0));
+            }
+        }
+        int n = nonEmpty.size();
+        if (n > MAX_REGIONS) {
+            throw new IllegalArgumentException("Too many regions: " + n + " > " + MAX_REGIONS);
+        }
+        if (n == 0) {
+            width = height = 0;
+            return optimal = true;
+        }
+
+        // the search order: the largest area first, identical regions adjacent
+        nonEmpty.sort((a, b) -> {
+            int c = Long.compare((long) b.width() * b.height(), (long) a.width() * a.height());
+            if (c != 0) return c;
+            c = Integer.compare(b.height(), a.height());
+            return c != 0 ? c : Integer.compare(b.width(), a.width());
+        });
+        int gx = 0, gy = 0, maxW = 0, maxH = 0;
+        long sumW = 0, sumH = 0, area = 0;
+        for (var region : nonEmpty) {
+            gx = gcd(gx, region.width());
+            gy = gcd(gy, region.height());
+        }
+        int[] widths = new int[n], heights = new int[n];
+        for (int i = 0; i < n; i++) {
+            widths[i] = nonEmpty.get(i).width() / gx;
+            heights[i] = nonEmpty.get(i).height() / gy;
+            maxW = Math.max(maxW, widths[i]);
+            maxH = Math.max(maxH, heights[i]);
+            sumW += widths[i];
+            sumH += heights[i];
+            area += (long) widths[i] * heights[i];
+        }
+
+        // the incumbent: a heuristic layout, or all regions in a row
+        var best = new PackerFitPos[n];
+        var heuristic = new BestOfPacker(GrowingPacker::new);
+        heuristic.fit(nonEmpty, deadline);
+        long bestWidth = 0, bestHeight = 0;
+        boolean allFitted = true;
+        for (var region : nonEmpty) {
+            var fit = region.fit().orElse(null);
+            if (fit == null) {
+                allFitted = false;
+                break;
+            }
+            bestWidth = Math.max(bestWidth, (long) fit.x() + region.width());
+            bestHeight = Math.max(bestHeight, (long) fit.y() + region.height());
+        }
+        long rowWidth = sumW * gx, rowHeight = (long) maxH * gy;
+        if (allFitted && bestWidth * bestHeight <= rowWidth * rowHeight) {
+            for (int i = 0; i < n; i++) best[i] = nonEmpty.get(i).fit().orElseThrow();
+        } else {
+            bestWidth = rowWidth;
+            bestHeight = rowHeight;
+            for (int i = 0, x = 0; i < n; x += nonEmpty.get(i).width(), i++) best[i] = PackerFitPos.of(x, 0);
+        }
+        long bestArea = bestWidth * bestHeight;
+
+        // the boxes in increasing order of area, then the squarest; each width with its smallest height first
+        var boxes = new PriorityQueue<long[]>((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[3], b[3]));
+        for (long w = maxW; w <= sumW; w++) {
+            long h = Math.max(maxH, (area + w - 1) / w);
+            if (w * gx * h * gy < bestArea) boxes.add(box(w, h, gx, gy));
+        }
+        boolean proven = true;
+        while (!boxes.isEmpty()) {
+            var box = boxes.poll();
+            if (box[0] >= bestArea) break;
+            if (box[1] > Integer.MAX_VALUE || box[2] > Integer.MAX_VALUE || deadline.expired()) {
+                proven = false;
+                break;
+            }
+            var search = new Box(widths, heights, (int) box[1], (int) box[2], deadline);
+            int[] solution = search.solve(parallel);
+            if (search.aborted) {
+                proven = false;
+                break;
+            }
+            if (solution != null) {
+                for (int i = 0; i < n; i++) best[i] = PackerFitPos.of(solution[i * 2] * gx, solution[i * 2 + 1] * gy);
+                bestWidth = box[1] * gx;
+                bestHeight = box[2] * gy;
+                break;
+            }
+            var next = box(box[1], box[2] + 1, gx, gy);
+            if (next[0] < bestArea) boxes.add(next);
+        }
+
+        for (int i = 0; i < n; i++) {
+            nonEmpty.get(i).setFit(best[i]);
+        }
+        width = (int) bestWidth;
+        height = (int) bestHeight;
+        return optimal = proven;
+    }
+
+    private static long[] box(long w, long h, int gx, int gy) {
+        return new long[]{w * gx * h * gy, w, h, Math.abs(w * gx - h * gy)};
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Returns {@code true} if the last layout was proven to have the bounding box with the smallest area.
+     *
+     * @return {@code true} if the last layout is proven optimal.
+     */
+    public boolean optimal() {
+        return optimal;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    /**
+     * The search of whether all regions fit in a box.
+     */
+    private static final class Box {
+        private final int[] widths, heights;
+        private final int width, height;
+        private final long slack;
+        private final Deadline deadline;
+        private final Set<State> failed = ConcurrentHashMap.newKeySet();
+        private final AtomicLong memoSize = new AtomicLong();
+        private volatile int[] solution;
+        private volatile boolean aborted;
+
+        Box(int[] widths, int[] heights, int width, int height, Deadline deadline) {
+            this.widths = widths;
+            this.heights = heights;
+            this.width = width;
+            this.height = height;
+            long area = 0;
+            for (int i = 0; i < widths.length; i++) area += (long) widths[i] * heights[i];
+            this.slack = (long) width * height - area;
+            this.deadline = deadline;
+        }
+
+        int[] solve(boolean parallel) {
+            // the regions wider than half of the box cannot be side by side, so they are stacked
+            long stacked = 0, aligned = 0;
+            for (int i = 0; i < widths.length; i++) {
+                if (widths[i] * 2L > width) stacked += heights[i];
+                if (heights[i] * 2L > height) aligned += widths[i];
+            }
+            if (stacked > height || aligned > width) {
+                return null;
+            }
+            // in a packing pushed up and left, a region is at (0, 0), so the first cell is never empty
+            var roots = new ArrayList<Search>();
+            for (int i = 0; i < widths.length; i++) {
+                if (leader(i, 0L) && widths[i] <= width && heights[i] <= height) {
+                    var search = new Search(this);
+                    search.place(i, 0, 0);
+                    roots.add(search);
+                }
+            }
+            var stream = IntStream.range(0, roots.size());
+            (parallel ? stream.parallel() : stream).forEach(i -> {
+                if (solution == null && !aborted) roots.get(i).run();
+            });
+            return solution;
+        }
+
+        boolean leader(int i, long mask) {
+            // identical regions are placed in order
+            return (mask & (1L << i)) == 0 &&
+                   (i == 0 || widths[i] != widths[i - 1] || heights[i] != heights[i - 1] || (mask & (1L << (i - 1))) != 0);
+        }
+
+        void fail(long mask, int[] skyline) {
+            if (memoSize.addAndGet(skyline.length + 8) <= MEMO_BUDGET) {
+                failed.add(new State(mask, skyline.clone()));
+            }
+        }
+    }
+
+    /**
+     * A depth-first search from a state of a box. The placed regions are kept as a skyline,
+     * because the first free cell is filled first: each column is filled from the top.
+     */
+    private static final class Search {
+        private final Box box;
+        private final int[] skyline;
+        private final int[] positions;
+        private final long full;
+        private final long[] sums;
+        private final int[] bestWidths, bestHeights;
+        private long mask;
+        private long waste;
+        private int nodes;
+
+        Search(Box box) {
+            this.box = box;
+            this.skyline = new int[box.width];
+            this.positions = new int[box.widths.length * 2];
+            this.full = box.widths.length == Long.SIZE ? -1L : (1L << box.widths.length) - 1;
+            this.sums = new long[(Math.max(box.width, box.height) >>> 6) + 1];
+            this.bestWidths = new int[box.width + 1];
+            this.bestHeights = new int[box.height + 1];
+        }
+
+        /**
+         * Gets a lower bound of the cells that will be left empty.
+         * <p>
+         * The free cells of a column are contiguous, and the regions that cross the column have
+         * heights that sum up to at most its free height. Likewise, the regions that cross a row
+         * inside a run of free cells have widths that sum up to at most the run. The cells that
+         * no sum of the unplaced regions can reach stay empty.
+         */
+        private long wasteBound() {
+            reachable(box.widths, box.width, bestWidths);
+            reachable(box.heights, box.height, bestHeights);
+            long columns = 0;
+            for (int h : skyline) {
+                int free = box.height - h;
+                columns += free - bestHeights[free];
+            }
+            // the rows between two consecutive levels of the skyline have the same runs
+            long rows = 0;
+            int level = Integer.MAX_VALUE;
+            for (int h : skyline) level = Math.min(level, h);
+            while (level < box.height) {
+                int next = box.height;
+                long rowWaste = 0;
+                for (int x = 0; x < skyline.length; ) {
+                    if (skyline[x] > level) {
+                        next = Math.min(next, skyline[x]);
+                        x++;
+                        continue;
+                    }
+                    int end = x + 1;
+                    while (end < skyline.length && skyline[end] <= level) end++;
+                    rowWaste += end - x - bestWidths[end - x];
+                    x = end;
+                }
+                rows += rowWaste * (next - level);
+                level = next;
+            }
+            return Math.max(columns, rows);
+        }
+
+        /**
+         * Computes the largest sum of the given sizes of the unplaced regions not greater than each limit.
+         */
+        private void reachable(int[] sizes, int max, int[] best) {
+            int words = (max >>> 6) + 1;
+            Arrays.fill(sums, 0, words, 0L);
+            sums[0] = 1L;
+            for (int i = 0; i < sizes.length; i++) {
+                int size = sizes[i];
+                if ((mask & (1L << i)) != 0 || size > max) continue;
+                // sums |= sums << size
+                int wordShift = size >>> 6, bitShift = size & 63;
+                for (int k = words - 1; k >= wordShift; k--) {
+                    long shifted = sums[k - wordShift] << bitShift;
+                    if (bitShift != 0 && k - wordShift - 1 >= 0) shifted |= sums[k - wordShift - 1] >>> (64 - bitShift);
+                    sums[k] |= shifted;
+                }
+            }
+            for (int k = 0, last = 0; k <= max; k++) {
+                if ((sums[k >>> 6] & (1L << k)) != 0) last = k;
+                best[k] = last;
+            }
+        }
+
+        void place(int i, int x, int y) {
+            Arrays.fill(skyline, x, x + box.widths[i], y + box.heights[i]);
+            mask |= 1L << i;
+            positions[i * 2] = x;
+            positions[i * 2 + 1] = y;
+        }
+
+        void run() {
+            if (search()) {
+                box.solution = positions.clone();
+            }
+        }
+
+        private boolean search() {
+            if (mask == full) return true;
+            if ((++nodes & 1023) == 0 && (box.solution != null || box.aborted || (box.deadline.expired() && (box.aborted = true)))) {
+                return false;
+            }
+            if (box.solution != null || box.aborted) return false;
+            // the first free cell: the top of the lowest column, then the leftmost
+            int x = 0;
+            for (int i = 1; i < skyline.length; i++) {
+                if (skyline[i] < skyline[x]) x = i;
+            }
+            int y = skyline[x];
+            int run = 1;
+            while (x + run < skyline.length && skyline[x + run] == y) run++;
+            if (box.failed.contains(new State(mask, skyline)) || waste + wasteBound() > box.slack) return false;
+
+            boolean anyFits = false;
+            for (int i = 0; i < box.widths.length; i++) {
+                int w = box.widths[i], h = box.heights[i];
+                if (w > run || h > box.height - y || !box.leader(i, mask)) continue;
+                anyFits = true;
+                place(i, x, y);
+                if (search()) return true;
+                Arrays.fill(skyline, x, x + w, y);
+                mask &= ~(1L << i);
+            }
+            if (anyFits) {
+                // leave the first cell empty
+                if (waste + 1 <= box.slack) {
+                    skyline[x]++;
+                    waste++;
+                    boolean found = search();
+                    skyline[x]--;
+                    waste--;
+                    if (found) return true;
+                }
+            } else {
+                // no region starts in the run until it is as high as a neighbour
+                int left = x > 0 ? skyline[x - 1] : box.height;
+                int right = x + run < skyline.length ? skyline[x + run] : box.height;
+                int raise = Math.min(Math.min(left, right), box.height) - y;
+                if (raise > 0 && waste + (long) raise * run <= box.slack) {
+                    Arrays.fill(skyline, x, x + run, y + raise);
+                    waste += (long) raise * run;
+                    boolean found = search();
+                    Arrays.fill(skyline, x, x + run, y);
+                    waste -= (long) raise * run;
+                    if (found) return true;
+                }
+            }
+            if (!box.aborted && box.solution == null) {
+                box.fail(mask, skyline);
+            }
+            return false;
+        }
+    }
+
+    private record State(long mask, int[] skyline) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof State state && mask == state.mask && Arrays.equals(skyline, state.skyline);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(mask) * 31 + Arrays.hashCode(skyline);
+        }
+    }
+}
@@ -26,6 +26,7 @@ package org.overrun.binpacking;
 
 import org.overrun.binpacking.internal.PackerNode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -36,6 +37,9 @@ import java.util.List;
  * <p>
  * Best results occur when the input blocks are sorted by height, or even better
  * when sorted by {@code max(width,height)}.
+ * <p>
+ * Runs of regions with identical sizes are placed as grid blocks, so that
+ * sorted regions of the same size are packed together with one search per block.
  * <h2>Example</h2>
  * <pre>
  * {@code
@@ -60,6 +64,10 @@ import java.util.List;
  */
 public final class FixedPacker extends Packer {
     private final PackerNode root;
+    // the split nodes in order, to revert them on rollback; only recorded while a checkpoint is active
+    private final List<PackerNode> undoLog = new ArrayList<>();
+    // the active checkpoints
+    private final List<Integer> checkpoints = new ArrayList<>();
 
     /**
      * Creates a new fixed packer with the given size.
@@ -75,12 +83,136 @@ public final class FixedPacker extends Packer {
 
     @Override
     public void fit(List<? extends PackerRegion<?>> regions) {
+        int[] sizes = readSizes(regions);
+        int[] fits = newFits(regions.size());
         PackerNode node;
+        for (int i = 0, size = regions.size(); i < size; ) {
+            int w = sizes[i * 2];
+            int h = sizes[i * 2 + 1];
+            int end = i + runLength(sizes, i);
+            while (i < end) {
+                if ((node = findNode(root, w, h)) == null) {
+                    i = end;
+                    break;
+                }
+                // an empty region is a run of its own, placed once
+                int cols = w > 0 ? Math.min(node.width() / w, end - i) : 1;
+                int rows = h > 0 ? Math.min(node.height() / h, (end - i) / cols) : 1;
+                if (cols * rows == 1) {
+                    split(node, w, h);
+                    fits[i * 2] = node.x();
+                    fits[i * 2 + 1] = node.y();
+                } else {
+                    split(node, cols * w, rows * h);
+                    fitGrid(fits, i, cols, rows, node.x(), node.y(), w, h);
+                }
+                i += cols * rows;
+            }
+        }
+        writeFits(regions, fits);
+    }
+
+    /**
+     * Fits this packer with the given regions, only if all of them fit.
+     * <p>
+     * If any region does not fit, this packer and the fit positions of the regions are left unchanged.
+     *
+     * @param regions the regions.
+     * @return {@code true} if all regions fit.
+     * @since 0.6.0
+     */
+    public boolean fitAll(List<? extends PackerRegion<?>> regions) {
+        int size = regions.size();
+        var previous = new PackerFitPos[size];
+        for (int i = 0; i < size; i++) {
+            var region = regions.get(i);
+            previous[i] = region.fit().orElse(null);
+            region.setFit(null);
+        }
+        int checkpoint = checkpoint();
+        fit(regions);
         for (var region : regions) {
-            if ((node = findNode(root, region.width(), region.height())) != null) {
-                region.setFit(splitNode(node, region.width(), region.height()));
+            if (region.fit().isEmpty()) {
+                rollback(checkpoint);
+                release(checkpoint);
+                for (int i = 0; i < size; i++) {
+                    regions.get(i).setFit(previous[i]);
+                }
+                return false;
             }
         }
+        release(checkpoint);
+        return true;
+    }
+
+    /**
+     * Creates a checkpoint of the current state of this packer.
+     * <p>
+     * The checkpoint is cheap: the splits made after it are recorded in an undo log.
+     * The checkpoint stays active until it is {@linkplain #release(int) released},
+     * and the undo log is only kept while any checkpoint is active.
+     *
+     * @return the checkpoint.
+     * @see #rollback(int)
+     * @see #release(int)
+     * @since 0.6.0
+     */
+    public int checkpoint() {
+        int checkpoint = undoLog.size();
+        checkpoints.add(checkpoint);
+        return checkpoint;
+    }
+
+    /**
+     * Releases the given checkpoint, keeping the splits made after it.
+     * The undo log is discarded once no checkpoint is active.
+     *
+     * @param checkpoint the checkpoint.
+     * @throws IllegalArgumentException if the checkpoint is not active.
+     * @since 0.6.0
+     */
+    public void release(int checkpoint) {
+        if (!checkpoints.remove(Integer.valueOf(checkpoint))) {
+            throw new IllegalArgumentException("Invalid checkpoint: " + checkpoint);
+        }
+        if (checkpoints.isEmpty()) {
+            undoLog.clear();
+        }
+    }
+
+    /**
+     * Reverts this packer to the state of the given checkpoint. The regions fitted after the
+     * checkpoint keep their fit positions, which are no longer reserved.
+     * <p>
+     * The checkpoint stays active. A checkpoint is invalid after a rollback to an earlier checkpoint.
+     *
+     * @param checkpoint the checkpoint.
+     * @throws IllegalArgumentException if the checkpoint is not active.
+     * @since 0.6.0
+     */
+    public void rollback(int checkpoint) {
+        if (!checkpoints.contains(checkpoint)) {
+            throw new IllegalArgumentException("Invalid checkpoint: " + checkpoint);
+        }
+        checkpoints.removeIf(c -> c > checkpoint);
+        for (int i = undoLog.size() - 1; i >= checkpoint; i--) {
+            var node = undoLog.remove(i).markFree();
+            if (node.parent() != null) {
+                node.parent().updateFreeSize();
+            }
+        }
+    }
+
+    private PackerNode split(PackerNode node, int w, int h) {
+        if (!checkpoints.isEmpty()) {
+            undoLog.add(node);
+        }
+        return splitNode(node, w, h);
+    }
+
+    @Override
+    public boolean incremental() {
+        return true;
     }
 
     @Override
@@ -92,18 +224,4 @@ public final class FixedPacker extends Packer {
     public int height() {
         return root.height();
     }
-
-    private PackerNode splitNode(PackerNode node, int w, int h) {
-        return node.markUsed()
-            .setDown(new PackerNode()
-                .setX(node.x())
-                .setY(node.y() + w)
-                .setWidth(node.width())
-                .setHeight(node.height() - h))
-            .setRight(new PackerNode()
-                .setX(node.x() + w)
-                .setY(node.y())
-                .setWidth(node.width() - w)
-                .setHeight(h));
-    }
 }
@@ -0,0 +1,265 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A packer that keeps the regions of each {@linkplain PackerRegion#group() group} close together.
+ * <p>
+ * Regions that are sampled together render faster when they are close in the atlas, as fewer
+ * texture cache lines are touched. Each group is packed into its own box, and the boxes are packed
+ * together with the other regions, {@linkplain Packer#sort(List) sorted} by height, then width.
+ * The regions of a boxed group are then as close as the packer can put them, but the free space
+ * left in the boxes costs density.
+ * <p>
+ * The packer therefore boxes only as many groups as the {@linkplain #tolerance(double) tolerance}
+ * allows: the area of the atlas must stay within the tolerance of the ungrouped layout, which packs
+ * all regions in the given order. The groups that waste the least space in their boxes are boxed
+ * first, and the count of boxed groups is found by a binary search. The other groups are packed
+ * loose. If no group can be boxed, the ungrouped layout is kept. A layout that fits fewer regions
+ * than the ungrouped layout is never kept.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var glyphs = text.chars()
+ *     .mapToObj(c -> PackerRegion.grouped(font.glyphSize(c), c, text))
+ *     .toList();
+ * var packer = new GroupedPacker(GrowingPacker::new).tolerance(0.05);
+ * packer.fit(glyphs);
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class GroupedPacker extends Packer {
+    private final Supplier<? extends Packer> factory;
+    private double tolerance = 0.05;
+    private int boxedGroups;
+    private int width, height;
+
+    /**
+     * Creates a new grouped packer.
+     *
+     * @param factory the factory that creates a new packer for each group and for each layout.
+     */
+    public GroupedPacker(Supplier<? extends Packer> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Sets the tolerated growth of the area of the atlas over the ungrouped layout.
+     * Defaults to {@code 0.05}, which is 5%.
+     *
+     * @param tolerance the tolerance, not negative.
+     * @return this.
+     */
+    public GroupedPacker tolerance(double tolerance) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Invalid tolerance: " + tolerance);
+        }
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    @Override
+    public void fit(List<? extends PackerRegion<?>> regions) {
+        int size = regions.size();
+
+        // the ungrouped layout is the reference
+        var packer = factory.get();
+        clearFits(regions);
+        packer.fit(regions);
+        var best = new PackerFitPos[size];
+        int bestCount = saveFits(regions, best);
+        width = packer.width();
+        height = packer.height();
+        boxedGroups = 0;
+        double limit = (double) width * height * (1 + tolerance);
+
+        var indices = new HashMap<Object, Integer>();
+        var groups = new ArrayList<Group>();
+        var singles = new ArrayList<PackerRegion<?>>();
+        for (var region : regions) {
+            var group = region.group();
+            if (group == null) {
+                singles.add(region);
+                continue;
+            }
+            int index = indices.computeIfAbsent(group, k -> {
+                groups.add(new Group(new ArrayList<>()));
+                return groups.size() - 1;
+            });
+            groups.get(index).regions.add(region);
+        }
+        for (var group : groups) {
+            group.pack(factory.get());
+        }
+        // the groups that waste the least space are boxed first
+        groups.sort(Comparator.comparingDouble(group -> group.waste));
+
+        // find the most groups that can be boxed within the tolerance
+        int low = 0, high = groups.size();
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            packer = fitBoxed(groups, mid, singles);
+            if (countFits(regions) == bestCount && (double) packer.width() * packer.height() <= limit) {
+                saveFits(regions, best);
+                width = packer.width();
+                height = packer.height();
+                boxedGroups = mid;
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            regions.get(i).setFit(best[i]);
+        }
+    }
+
+    /**
+     * Packs the boxes of the given count of groups together with the loose regions.
+     *
+     * @return the packer of the boxes.
+     */
+    private Packer fitBoxed(List<Group> groups, int boxed, List<PackerRegion<?>> singles) {
+        var items = new ArrayList<PackerRegion<?>>(singles);
+        for (int i = 0; i < groups.size(); i++) {
+            var group = groups.get(i);
+            if (i < boxed) {
+                items.add(PackerRegion.delegate(PackerRegion.sized(group.width, group.height), group));
+            } else {
+                items.addAll(group.regions);
+            }
+        }
+        items.sort(null);
+        var packer = factory.get();
+        // the loose regions that do not fit must not keep the fits of an earlier layout
+        clearFits(items);
+        packer.fit(items);
+        for (var item : items) {
+            if (!(item.userdata() instanceof Group group)) continue;
+            var offset = item.fit().orElse(null);
+            for (int i = 0, size = group.regions.size(); i < size; i++) {
+                var fit = group.fits[i];
+                group.regions.get(i).setFit(offset != null && fit != null
+                    ? PackerFitPos.of(offset.x() + fit.x(), offset.y() + fit.y(), fit.rotated())
+                    : null);
+            }
+        }
+        return packer;
+    }
+
+    /**
+     * Clears the fits of an earlier layout, because packers with a fixed canvas leave the regions
+     * that do not fit unchanged.
+     */
+    private static void clearFits(List<? extends PackerRegion<?>> regions) {
+        for (var region : regions) {
+            region.setFit(null);
+        }
+    }
+
+    private static int saveFits(List<? extends PackerRegion<?>> regions, PackerFitPos[] fits) {
+        int count = 0;
+        for (int i = 0, size = regions.size(); i < size; i++) {
+            var fit = regions.get(i).fit().orElse(null);
+            if (fit != null) count++;
+            fits[i] = fit;
+        }
+        return count;
+    }
+
+    private static int countFits(List<? extends PackerRegion<?>> regions) {
+        int count = 0;
+        for (var region : regions) {
+            if (region.fit().isPresent()) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the count of groups that were packed into their own boxes by the last fit.
+     *
+     * @return the count of boxed groups.
+     */
+    public int boxedGroups() {
+        return boxedGroups;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    /**
+     * A group of regions with its own box.
+     */
+    private static final class Group {
+        final List<PackerRegion<?>> regions;
+        PackerFitPos[] fits;
+        int width, height;
+        double waste;
+
+        Group(List<PackerRegion<?>> regions) {
+            this.regions = regions;
+        }
+
+        /**
+         * Packs this group into its box and keeps the fit positions in the box.
+         */
+        void pack(Packer packer) {
+            var sorted = new ArrayList<>(regions);
+            sorted.sort(null);
+            // the fits of the ungrouped layout are in the coordinates of the atlas, not of the box
+            clearFits(sorted);
+            packer.fit(sorted);
+            fits = new PackerFitPos[regions.size()];
+            long area = 0;
+            for (int i = 0, size = regions.size(); i < size; i++) {
+                var region = regions.get(i);
+                area += (long) region.width() * region.height();
+                var fit = region.fit().orElse(null);
+                fits[i] = fit;
+                if (fit == null) continue;
+                boolean rotated = fit.rotated();
+                width = Math.max(width, fit.x() + (rotated ? region.height() : region.width()));
+                height = Math.max(height, fit.y() + (rotated ? region.width() : region.height()));
+            }
+            waste = area > 0 ? (double) width * height / area : 1;
+        }
+    }
+}
@@ -26,6 +26,7 @@ package org.overrun.binpacking;
 
 import org.overrun.binpacking.internal.PackerNode;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -49,6 +50,12 @@ import java.util.List;
  * <p>
  * Best results occur when the input blocks are sorted by height, or even better
  * when sorted by {@code max(width,height)}.
+ * <p>
+ * Runs of regions with identical sizes are placed as grid blocks, so that
+ * sorted regions of the same size are packed together with one search per block.
+ * <p>
+ * The packer never grows beyond {@link Integer#MAX_VALUE} in either direction; a region that
+ * would require it is not fitted. Use {@link LongGrowingPacker} for larger canvases.
  * <h2>Example</h2>
  * <pre>
  * {@code
@@ -73,6 +80,15 @@ import java.util.List;
  */
 public final class GrowingPacker extends Packer {
     private PackerNode root;
+    // The grown strips are kept in two forests of perfect trees, like binary counters,
+    // so that the depth of the tree stays logarithmic in the count of growths.
+    // Strips grown right are searched before the first node, those grown down after it.
+    private final PackerNode[] rightTrees = new PackerNode[Integer.SIZE];
+    private final int[] rightSizes = new int[Integer.SIZE];
+    private int rightCount;
+    private final PackerNode[] downTrees = new PackerNode[Integer.SIZE + 1];
+    private final int[] downSizes = new int[Integer.SIZE + 1];
+    private int downCount;
 
     /**
      * Creates a new growable packer.
@@ -82,54 +98,72 @@ public final class GrowingPacker extends Packer {
 
     @Override
     public void fit(List<? extends PackerRegion<?>> regions) {
+        int[] sizes = readSizes(regions);
+        int[] fits = newFits(regions.size());
         PackerNode node;
         boolean isNotEmpty = regions.size() > 0;
-        int w = isNotEmpty ? regions.get(0).width() : 0;
-        int h = isNotEmpty ? regions.get(0).height() : 0;
         root = new PackerNode()
-            .setWidth(w)
-            .setHeight(h);
-        for (var region : regions) {
-            if ((node = findNode(root, region.width(), region.height())) != null) {
-                region.setFit(splitNode(node, region.width(), region.height()));
-            } else {
-                region.setFit(growNode(region.width(), region.height()));
+            .setWidth(isNotEmpty ? sizes[0] : 0)
+            .setHeight(isNotEmpty ? sizes[1] : 0);
+        Arrays.fill(rightTrees, null);
+        Arrays.fill(downTrees, null);
+        rightCount = 0;
+        downTrees[0] = root;
+        downSizes[0] = 1;
+        downCount = 1;
+        for (int i = 0, size = regions.size(); i < size; ) {
+            int w = sizes[i * 2];
+            int h = sizes[i * 2 + 1];
+            int end = i + runLength(sizes, i);
+            while (i < end) {
+                if ((node = findNode(root, w, h)) == null) {
+                    node = growNode(w, h);
+                    if (node == null) {
+                        // the identical regions cannot fit either
+                        for (; i < end; i++) fits[i * 2] = FIT_NONE;
+                        break;
+                    }
+                    fits[i * 2] = node.x();
+                    fits[i * 2 + 1] = node.y();
+                    i++;
+                    continue;
+                }
+                // an empty region is a run of its own, placed once
+                int cols = w > 0 ? Math.min(node.width() / w, end - i) : 1;
+                int rows = h > 0 ? Math.min(node.height() / h, (end - i) / cols) : 1;
+                if (cols * rows == 1) {
+                    splitNode(node, w, h);
+                    fits[i * 2] = node.x();
+                    fits[i * 2 + 1] = node.y();
+                } else {
+                    splitNode(node, cols * w, rows * h);
+                    fitGrid(fits, i, cols, rows, node.x(), node.y(), w, h);
+                }
+                i += cols * rows;
             }
         }
+        writeFits(regions, fits);
     }
 
     @Override
     public int width() {
-        return root.width();
+        return root != null ? root.width() : 0;
     }
 
     @Override
     public int height() {
-        return root.height();
-    }
-
-    private PackerNode splitNode(PackerNode node, int w, int h) {
-        return node.markUsed()
-            .setDown(new PackerNode()
-                .setX(node.x())
-                .setY(node.y() + h)
-                .setWidth(node.width())
-                .setHeight(node.height() - h))
-            .setRight(new PackerNode()
-                .setX(node.x() + w)
-                .setY(node.y())
-                .setWidth(node.width() - w)
-                .setHeight(node.height()));
+        return root != null ? root.height() : 0;
     }
 
     private PackerNode growNode(int w, int h) {
-        boolean canGrowDown = w <= root.width();
-        boolean canGrowRight = h <= root.height();
+        // a growth that would overflow the int coordinates is rejected
+        boolean canGrowDown = w <= root.width() && h <= Integer.MAX_VALUE - root.height();
+        boolean canGrowRight = h <= root.height() && w <= Integer.MAX_VALUE - root.width();
 
         // attempt to keep square-ish by growing right when height is much greater than width
-        boolean shouldGrowRight = canGrowRight && (root.height() >= (root.width() + w));
+        boolean shouldGrowRight = canGrowRight && (root.height() >= ((long) root.width() + w));
         // attempt to keep square-ish by growing down when width is much greater than height
-        boolean shouldGrowDown = canGrowDown && (root.width() >= (root.height() + h));
+        boolean shouldGrowDown = canGrowDown && (root.width() >= ((long) root.height() + h));
 
         if (shouldGrowRight)
             return growRight(w, h);
@@ -144,18 +178,12 @@ public final class GrowingPacker extends Packer {
     }
 
     private PackerNode growRight(int w, int h) {
-        root = new PackerNode()
-            .markUsed()
-            .setX(0)
+        rightCount = pushTree(rightTrees, rightSizes, rightCount, new PackerNode()
+            .setX(root.width())
             .setY(0)
-            .setWidth(root.width() + w)
-            .setHeight(root.height())
-            .setDown(root)
-            .setRight(new PackerNode()
-                .setX(root.width())
-                .setY(0)
-                .setWidth(w)
-                .setHeight(root.height()));
+            .setWidth(w)
+            .setHeight(root.height()), true);
+        rebuildRoot(root.width() + w, root.height());
         PackerNode node;
         if ((node = findNode(root, w, h)) != null) {
             return splitNode(node, w, h);
@@ -164,22 +192,73 @@ public final class GrowingPacker extends Packer {
     }
 
     private PackerNode growDown(int w, int h) {
-        root = new PackerNode()
-            .markUsed()
+        downCount = pushTree(downTrees, downSizes, downCount, new PackerNode()
             .setX(0)
-            .setY(0)
+            .setY(root.height())
             .setWidth(root.width())
-            .setHeight(root.height() + h)
-            .setDown(new PackerNode()
-                .setX(0)
-                .setY(root.height())
-                .setWidth(root.width())
-                .setHeight(h))
-            .setRight(root);
+            .setHeight(h), false);
+        rebuildRoot(root.width(), root.height() + h);
         PackerNode node;
         if ((node = findNode(root, w, h)) != null) {
             return splitNode(node, w, h);
         }
         return null;
     }
+
+    /**
+     * Pushes the given strip to the end of the forest and merges the trees with the same size.
+     *
+     * @param newerFirst {@code true} if the newer tree is searched before the older one.
+     * @return the new count of trees.
+     */
+    private static int pushTree(PackerNode[] trees, int[] sizes, int count, PackerNode strip, boolean newerFirst) {
+        trees[count] = strip;
+        sizes[count] = 1;
+        count++;
+        while (count > 1 && sizes[count - 1] == sizes[count - 2]) {
+            PackerNode newer = trees[count - 1];
+            PackerNode older = trees[count - 2];
+            trees[count - 1] = null;
+            count--;
+            trees[count - 1] = new PackerNode()
+                .markUsed()
+                .setRight(newerFirst ? newer : older)
+                .setDown(newerFirst ? older : newer)
+                .updateFreeSize();
+            sizes[count - 1] <<= 1;
+        }
+        return count;
+    }
+
+    private void rebuildRoot(int width, int height) {
+        // search order: the newest right strip first, then the older ones,
+        // then the first node and the oldest down strip, then the newer ones
+        PackerNode chain = null;
+        for (int i = downCount - 1; i >= 0; i--) {
+            chain = link(downTrees[i], chain);
+        }
+        for (int i = 0; i < rightCount - 1; i++) {
+            chain = link(rightTrees[i], chain);
+        }
+        root = new PackerNode()
+            .markUsed()
+            .setX(0)
+            .setY(0)
+            .setWidth(width)
+            .setHeight(height)
+            .setRight(rightCount > 0 ? rightTrees[rightCount - 1] : chain)
+            .setDown(rightCount > 0 ? chain : null)
+            .updateFreeSize();
+    }
+
+    private static PackerNode link(PackerNode first, PackerNode rest) {
+        if (rest == null) {
+            return first;
+        }
+        return new PackerNode()
+            .markUsed()
+            .setRight(first)
+            .setDown(rest)
+            .updateFreeSize();
+    }
 }
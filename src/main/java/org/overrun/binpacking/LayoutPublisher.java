@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Publishes immutable, versioned {@linkplain PackedLayout layouts} of a packer that keeps packing,
+ * in the style of read-copy-update.
+ * <p>
+ * A single writer {@linkplain #fit(List) fits} batches of regions, and each batch publishes a new
+ * {@link Snapshot} through a single volatile reference. Readers {@linkplain #snapshot() get} the
+ * latest snapshot without blocking and see a consistent layout, even while the writer is packing,
+ * because a snapshot never changes after it was published.
+ * <p>
+ * An {@linkplain Packer#incremental() incremental} packer, such as a {@link FixedPacker},
+ * {@link StripPacker} or {@link BuddyPacker}, is only fitted with each batch, so the regions never move.
+ * Any other packer is refitted with all regions on each batch, so the regions may move between versions.
+ * <p>
+ * Each batch copies the fit positions of all regions into a new layout and rebuilds its index,
+ * so publishing takes time and memory linear in the total count of regions, not in the size of the batch,
+ * and a packer that is not incremental also packs all regions again.
+ * Publish larger batches rather than many small ones.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var publisher = new LayoutPublisher(new FixedPacker(4096, 4096), userdata -> ((Texture) userdata).name());
+ * // loader thread
+ * publisher.fit(loadedRegions);
+ * // render thread
+ * var layout = publisher.snapshot().layout();
+ * layout.find("stone").ifPresent(fit -> draw(fit.x(), fit.y()));
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class LayoutPublisher {
+    private final Packer packer;
+    private final Function<Object, String> id;
+    // owned by the writer
+    private final List<PackerRegion<?>> regions = new ArrayList<>();
+    private final Set<String> ids = new HashSet<>();
+    private volatile Snapshot snapshot;
+
+    /**
+     * A layout published by a {@link LayoutPublisher}.
+     *
+     * @param version the version, which starts at {@code 0} and increments with each published batch.
+     * @param layout  the layout of all regions fitted until this version.
+     * @author squid233
+     * @since 0.6.0
+     */
+    public record Snapshot(long version, PackedLayout layout) {
+    }
+
+    /**
+     * Creates a publisher with the given packer and the given function that computes the ids from the userdata.
+     * An empty layout is published as the version {@code 0}.
+     *
+     * @param packer the packer, which must not be used elsewhere.
+     * @param id     the function that computes the id from the userdata, which may return {@code null} for no id.
+     */
+    public LayoutPublisher(Packer packer, Function<Object, String> id) {
+        this.packer = packer;
+        this.id = id;
+        this.snapshot = new Snapshot(0, PackedLayout.of(packer, regions, id));
+    }
+
+    /**
+     * Fits the given regions after the previously fitted ones, and publishes a new snapshot.
+     * <p>
+     * The writers are serialized; the readers are never blocked.
+     * This takes time linear in the total count of fitted regions.
+     *
+     * @param batch the regions.
+     * @return the published snapshot.
+     * @throws IllegalArgumentException if an id is already in use; nothing is fitted then.
+     */
+    public synchronized Snapshot fit(List<? extends PackerRegion<?>> batch) {
+        var batchIds = new HashSet<String>();
+        for (var region : batch) {
+            String regionId = id.apply(region.userdata());
+            if (regionId != null && (ids.contains(regionId) || !batchIds.add(regionId))) {
+                throw new IllegalArgumentException("Duplicate id: " + regionId);
+            }
+        }
+        ids.addAll(batchIds);
+        regions.addAll(batch);
+        if (packer.incremental()) {
+            packer.fit(batch);
+        } else {
+            packer.fit(regions);
+        }
+        // copy the fit positions while no one else writes them, then publish
+        var next = new Snapshot(snapshot.version() + 1, PackedLayout.of(packer, regions, id));
+        snapshot = next;
+        return next;
+    }
+
+    /**
+     * Gets the latest published snapshot. This method never blocks.
+     *
+     * @return the latest snapshot.
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Validates packed layouts.
+ * <p>
+ * A layout is valid if every fitted region is inside the bounds of the packer and no two
+ * fitted regions overlap. Regions with an empty area are only checked against the bounds.
+ * The overlaps are found with a sweep line in {@code O(n log n)} time, where the events are
+ * sorted with a radix sort.
+ * <p>
+ * {@link #validate(Packer, List) validate} only checks that the regions are contained in the size
+ * reported by the packer, which is all that holds for packers with a fixed canvas.
+ * {@link #validateExtent(Packer, List) validateExtent} also checks that the reported size is the
+ * extent of the fitted regions, for the packers that size the atlas to the regions.
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class LayoutValidator {
+    private LayoutValidator() {
+        //no instance
+    }
+
+    /**
+     * Validates the layout of the given regions fitted by the given packer.
+     *
+     * @param packer  the packer.
+     * @param regions the regions.
+     * @return the description of the first problem found, or empty if the layout is valid.
+     */
+    public static Optional<String> validate(Packer packer, List<? extends PackerRegion<?>> regions) {
+        return validate(packer.width(), packer.height(), regions);
+    }
+
+    /**
+     * Validates the layout of the given regions fitted by the given packer, and checks that
+     * the width and the height of the packer are the right and the bottom edge of the fitted regions.
+     *
+     * @param packer  the packer.
+     * @param regions the regions.
+     * @return the description of the first problem found, or empty if the layout is valid.
+     */
+    public static Optional<String> validateExtent(Packer packer, List<? extends PackerRegion<?>> regions) {
+        var problem = validate(packer, regions);
+        if (problem.isPresent()) {
+            return problem;
+        }
+        int width = 0, height = 0;
+        for (var region : regions) {
+            var fit = region.fit().orElse(null);
+            if (fit == null) continue;
+            width = Math.max(width, fit.x() + (fit.rotated() ? region.height() : region.width()));
+            height = Math.max(height, fit.y() + (fit.rotated() ? region.width() : region.height()));
+        }
+        if (packer.width() != width || packer.height() != height) {
+            return Optional.of("Reported size " + packer.width() + "x" + packer.height() + " is not the extent " + width + "x" + height);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Validates the layout of the given regions in the given bounds.
+     *
+     * @param width   the width of the bounds.
+     * @param height  the height of the bounds.
+     * @param regions the regions.
+     * @return the description of the first problem found, or empty if the layout is valid.
+     */
+    public static Optional<String> validate(int width, int height, List<? extends PackerRegion<?>> regions) {
+        if (width < 0 || height < 0) {
+            return Optional.of("Negative bounds " + width + "x" + height);
+        }
+        int size = regions.size();
+        int[] ys = new int[size];
+        int[] hs = new int[size];
+        long[] events = new long[size * 2];
+        int eventCount = 0;
+        for (int i = 0; i < size; i++) {
+            var region = regions.get(i);
+            var fit = region.fit().orElse(null);
+            if (fit == null) continue;
+            int x = fit.x(), y = fit.y();
+            int w = fit.rotated() ? region.height() : region.width();
+            int h = fit.rotated() ? region.width() : region.height();
+            if (w < 0 || h < 0) {
+                return Optional.of("Region " + i + " has a negative size " + w + "x" + h);
+            }
+            if (x < 0 || y < 0 || (long) x + w > width || (long) y + h > height) {
+                return Optional.of("Region " + i + " " + describe(region) + " is outside the bounds " + width + "x" + height);
+            }
+            if (w == 0 || h == 0) continue;
+            ys[i] = y;
+            hs[i] = h;
+            // sorted by x, then removals before insertions so that touching regions do not overlap
+            events[eventCount++] = ((long) (x + w) << 32) | i;
+            events[eventCount++] = ((long) x << 32) | (1L << 31) | i;
+        }
+        events = radixSort(events, new long[eventCount], eventCount, 31);
+
+        // the active regions never overlap each other, so each of them can be keyed by the rank of its y position
+        int activeCount = eventCount / 2;
+        long[] yOrder = new long[activeCount];
+        for (int e = 0, k = 0; e < eventCount; e++) {
+            long event = events[e];
+            if ((event & (1L << 31)) != 0) {
+                int i = (int) (event & 0x7fffffffL);
+                yOrder[k++] = ((long) ys[i] << 32) | i;
+            }
+        }
+        yOrder = radixSort(yOrder, new long[activeCount], activeCount, 32);
+        int[] ranks = new int[size];
+        int[] rankY = new int[activeCount];
+        int rankCount = 0;
+        for (int k = 0; k < activeCount; k++) {
+            long entry = yOrder[k];
+            int y = (int) (entry >>> 32);
+            if (rankCount == 0 || rankY[rankCount - 1] != y) {
+                rankY[rankCount++] = y;
+            }
+            ranks[(int) entry] = rankCount - 1;
+        }
+
+        var active = new BitTree(rankCount);
+        int[] activeRegion = new int[rankCount];
+        for (int e = 0; e < eventCount; e++) {
+            long event = events[e];
+            int i = (int) (event & 0x7fffffffL);
+            int rank = ranks[i];
+            if ((event & (1L << 31)) == 0) {
+                active.clear(rank);
+                continue;
+            }
+            int other = active.previous(rank);
+            if (other >= 0 && (long) ys[activeRegion[other]] + hs[activeRegion[other]] > ys[i]) {
+                return Optional.of(overlap(regions, activeRegion[other], i));
+            }
+            other = active.next(rank + 1);
+            if (other >= 0 && rankY[other] < (long) ys[i] + hs[i]) {
+                return Optional.of(overlap(regions, activeRegion[other], i));
+            }
+            active.set(rank);
+            activeRegion[rank] = i;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Sorts the first {@code count} elements by their unsigned bits from {@code fromBit} to the highest bit, stably.
+     *
+     * @return the array that holds the sorted elements, either {@code array} or {@code scratch}.
+     */
+    private static long[] radixSort(long[] array, long[] scratch, int count, int fromBit) {
+        int[] counts = new int[1 << 11];
+        for (int shift = fromBit; shift < Long.SIZE; shift += 11) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++) {
+                counts[(int) ((array[i] >>> shift) & 0x7ff)]++;
+            }
+            if (count == 0 || counts[(int) ((array[0] >>> shift) & 0x7ff)] == count) {
+                // all elements have the same digit
+                continue;
+            }
+            for (int i = 0, sum = 0; i < counts.length; i++) {
+                int c = counts[i];
+                counts[i] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < count; i++) {
+                long value = array[i];
+                scratch[counts[(int) ((value >>> shift) & 0x7ff)]++] = value;
+            }
+            long[] t = array;
+            array = scratch;
+            scratch = t;
+        }
+        return array;
+    }
+
+    private static String overlap(List<? extends PackerRegion<?>> regions, int a, int b) {
+        return "Region " + a + " " + describe(regions.get(a)) + " overlaps region " + b + " " + describe(regions.get(b));
+    }
+
+    private static String describe(PackerRegion<?> region) {
+        var fit = region.fit().orElseThrow();
+        return "at (" + fit.x() + ", " + fit.y() + ") with size " + region.width() + "x" + region.height() +
+               (fit.rotated() ? " rotated" : "");
+    }
+
+    /**
+     * A set of integers in {@code [0, size)} stored as a tree of bitsets with 64 children per node.
+     */
+    private static final class BitTree {
+        private final long[][] levels;
+
+        BitTree(int size) {
+            int count = 1;
+            for (int n = size; n > 64; n = (n + 63) >>> 6) count++;
+            levels = new long[count][];
+            for (int level = 0, n = size; level < count; level++, n = (n + 63) >>> 6) {
+                levels[level] = new long[Math.max((n + 63) >>> 6, 1)];
+            }
+        }
+
+        void set(int i) {
+            for (long[] words : levels) {
+                words[i >>> 6] |= 1L << i;
+                i >>>= 6;
+            }
+        }
+
+        void clear(int i) {
+            for (long[] words : levels) {
+                if ((words[i >>> 6] &= ~(1L << i)) != 0) break;
+                i >>>= 6;
+            }
+        }
+
+        /**
+         * Gets the greatest element that is less than or equal to {@code i}, or {@code -1}.
+         */
+        int previous(int i) {
+            int level = 0;
+            while (true) {
+                if (i < 0) return -1;
+                long bits = levels[level][i >>> 6] & (-1L >>> (63 - (i & 63)));
+                if (bits != 0) {
+                    i = (i & ~63) + 63 - Long.numberOfLeadingZeros(bits);
+                    break;
+                }
+                if (++level == levels.length) return -1;
+                i = (i >>> 6) - 1;
+            }
+            while (level-- > 0) {
+                i = (i << 6) + 63 - Long.numberOfLeadingZeros(levels[level][i]);
+            }
+            return i;
+        }
+
+        /**
+         * Gets the least element that is greater than or equal to {@code i}, or {@code -1}.
+         */
+        int next(int i) {
+            int level = 0;
+            while (true) {
+                if ((i >>> 6) >= levels[level].length) return -1;
+                long bits = levels[level][i >>> 6] & (-1L << (i & 63));
+                if (bits != 0) {
+                    i = (i & ~63) + Long.numberOfTrailingZeros(bits);
+                    break;
+                }
+                if (++level == levels.length) return -1;
+                i = (i >>> 6) + 1;
+            }
+            while (level-- > 0) {
+                i = (i << 6) + Long.numberOfTrailingZeros(levels[level][i]);
+            }
+            return i;
+        }
+    }
+}
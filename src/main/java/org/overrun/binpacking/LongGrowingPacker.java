@@ -0,0 +1,377 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.Arrays;
+
+/**
+ * A {@link GrowingPacker} with {@code long} coordinates, for canvases that exceed
+ * {@link Integer#MAX_VALUE} along an axis, such as virtual textures and map tiles.
+ * <p>
+ * The packer grows right or down like {@link GrowingPacker}, keeping the grown strips in
+ * forests of perfect trees, and places runs of regions with identical sizes as grid blocks.
+ * The nodes of the tree are stored in primitive arrays and the regions in {@link LongRegions},
+ * so nothing is boxed. The root and the links above the forests are rebuilt on each growth, and
+ * their nodes are reused, so the count of nodes is linear in the count of placed regions.
+ * A region that would grow the canvas beyond {@link Long#MAX_VALUE} is not fitted.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var regions = new LongRegions();
+ * for (var tile : tiles) regions.add(tile.width(), tile.height());
+ * var packer = new LongGrowingPacker();
+ * packer.fit(regions, regions.sortedOrder());
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class LongGrowingPacker {
+    private static final int NONE = -1;
+    // 6 longs per node: x, y, width, height, free width, free height
+    private long[] nodes = new long[6 * 64];
+    // 3 ints per node: parent, right, down
+    private int[] links = new int[3 * 64];
+    private boolean[] used = new boolean[64];
+    private int nodeCount;
+    private int root;
+    // the root and the links above the trees, which are replaced on each growth
+    private int[] spine = new int[64];
+    private int spineCount;
+    // the replaced spine nodes, which are reused before new nodes are allocated
+    private int[] freeNodes = new int[64];
+    private int freeCount;
+    private int[] nodeStack = new int[32];
+    // the grown strips, kept in forests of perfect trees like GrowingPacker
+    private final int[] rightTrees = new int[Integer.SIZE];
+    private final int[] rightSizes = new int[Integer.SIZE];
+    private int rightCount;
+    private final int[] downTrees = new int[Integer.SIZE + 1];
+    private final int[] downSizes = new int[Integer.SIZE + 1];
+    private int downCount;
+
+    /**
+     * Creates a new growable packer.
+     */
+    public LongGrowingPacker() {
+    }
+
+    /**
+     * Fits the given regions in index order.
+     *
+     * @param regions the regions.
+     */
+    public void fit(LongRegions regions) {
+        int size = regions.size();
+        var order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        fit(regions, order);
+    }
+
+    /**
+     * Fits the regions at the given indices, in the given order.
+     * <p>
+     * The best results occur with {@link LongRegions#sortedOrder()}.
+     *
+     * @param regions the regions.
+     * @param order   the indices of the regions to be fitted.
+     */
+    public void fit(LongRegions regions, int[] order) {
+        nodeCount = 0;
+        spineCount = 0;
+        freeCount = 0;
+        boolean isNotEmpty = order.length > 0;
+        root = newNode(0, 0,
+            isNotEmpty ? regions.width(order[0]) : 0,
+            isNotEmpty ? regions.height(order[0]) : 0);
+        rightCount = 0;
+        downTrees[0] = root;
+        downSizes[0] = 1;
+        downCount = 1;
+        for (int i = 0, size = order.length; i < size; ) {
+            long w = regions.width(order[i]);
+            long h = regions.height(order[i]);
+            int end = i + runLength(regions, order, i);
+            while (i < end) {
+                int node = findNode(w, h);
+                if (node == NONE) {
+                    node = growNode(w, h);
+                    if (node == NONE) {
+                        // the identical regions cannot fit either
+                        for (; i < end; i++) regions.clearFit(order[i]);
+                        break;
+                    }
+                    regions.setFit(order[i], x(node), y(node));
+                    i++;
+                    continue;
+                }
+                // an empty region is a run of its own, placed once
+                int cols = w > 0 ? (int) Math.min(width(node) / w, end - i) : 1;
+                int rows = h > 0 ? (int) Math.min(height(node) / h, (end - i) / cols) : 1;
+                splitNode(node, cols * w, rows * h);
+                long x = x(node), y = y(node);
+                for (int row = 0; row < rows; row++) {
+                    for (int col = 0; col < cols; col++, i++) {
+                        regions.setFit(order[i], x + col * w, y + row * h);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int runLength(LongRegions regions, int[] order, int from) {
+        long w = regions.width(order[from]), h = regions.height(order[from]);
+        if (w <= 0 || h <= 0) {
+            return 1;
+        }
+        int end = from + 1;
+        for (; end < order.length; end++) {
+            if (regions.width(order[end]) != w || regions.height(order[end]) != h) {
+                break;
+            }
+        }
+        return end - from;
+    }
+
+    /**
+     * Gets the width of the canvas.
+     *
+     * @return the width.
+     */
+    public long width() {
+        return nodeCount > 0 ? width(root) : 0;
+    }
+
+    /**
+     * Gets the height of the canvas.
+     *
+     * @return the height.
+     */
+    public long height() {
+        return nodeCount > 0 ? height(root) : 0;
+    }
+
+    /**
+     * Gets the count of nodes allocated by the last fit, including the nodes that are free for reuse.
+     *
+     * @return the count of nodes.
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    private int growNode(long w, long h) {
+        long rootWidth = width(root), rootHeight = height(root);
+        // a growth that would overflow the long coordinates is rejected
+        boolean canGrowDown = w <= rootWidth && h <= Long.MAX_VALUE - rootHeight;
+        boolean canGrowRight = h <= rootHeight && w <= Long.MAX_VALUE - rootWidth;
+
+        // attempt to keep square-ish, comparing without overflow
+        boolean shouldGrowRight = canGrowRight && rootHeight - rootWidth >= w;
+        boolean shouldGrowDown = canGrowDown && rootWidth - rootHeight >= h;
+
+        if (shouldGrowRight || (canGrowRight && !shouldGrowDown)) {
+            rightCount = pushTree(rightTrees, rightSizes, rightCount, newNode(rootWidth, 0, w, rootHeight), true);
+            rebuildRoot(rootWidth + w, rootHeight);
+        } else if (canGrowDown) {
+            downCount = pushTree(downTrees, downSizes, downCount, newNode(0, rootHeight, rootWidth, h), false);
+            rebuildRoot(rootWidth, rootHeight + h);
+        } else {
+            // need to ensure sensible root starting size to avoid this happening
+            return NONE;
+        }
+        int node = findNode(w, h);
+        if (node != NONE) {
+            splitNode(node, w, h);
+        }
+        return node;
+    }
+
+    /**
+     * Pushes the given strip to the end of the forest and merges the trees with the same size.
+     *
+     * @param newerFirst {@code true} if the newer tree is searched before the older one.
+     * @return the new count of trees.
+     */
+    private int pushTree(int[] trees, int[] sizes, int count, int strip, boolean newerFirst) {
+        trees[count] = strip;
+        sizes[count] = 1;
+        count++;
+        while (count > 1 && sizes[count - 1] == sizes[count - 2]) {
+            int newer = trees[count - 1];
+            int older = trees[count - 2];
+            count--;
+            trees[count - 1] = link(newerFirst ? newer : older, newerFirst ? older : newer);
+            sizes[count - 1] <<= 1;
+        }
+        return count;
+    }
+
+    private void rebuildRoot(long width, long height) {
+        // the previous spine is no longer reachable once it is rebuilt
+        if (freeCount + spineCount > freeNodes.length) {
+            freeNodes = Arrays.copyOf(freeNodes, Math.max(freeNodes.length << 1, freeCount + spineCount));
+        }
+        System.arraycopy(spine, 0, freeNodes, freeCount, spineCount);
+        freeCount += spineCount;
+        spineCount = 0;
+        // search order: the newest right strip first, then the older ones,
+        // then the first node and the oldest down strip, then the newer ones
+        int chain = NONE;
+        for (int i = downCount - 1; i >= 0; i--) {
+            chain = chain != NONE ? addSpine(link(downTrees[i], chain)) : downTrees[i];
+        }
+        for (int i = 0; i < rightCount - 1; i++) {
+            chain = addSpine(link(rightTrees[i], chain));
+        }
+        root = addSpine(newNode(0, 0, width, height));
+        used[root] = true;
+        setChildren(root, rightCount > 0 ? rightTrees[rightCount - 1] : chain, rightCount > 0 ? chain : NONE);
+        updateFreeSize(root);
+    }
+
+    private int addSpine(int node) {
+        if (spineCount == spine.length) {
+            spine = Arrays.copyOf(spine, spineCount << 1);
+        }
+        spine[spineCount++] = node;
+        return node;
+    }
+
+    private int link(int right, int down) {
+        int node = newNode(0, 0, 0, 0);
+        used[node] = true;
+        setChildren(node, right, down);
+        updateFreeSize(node);
+        return node;
+    }
+
+    private int findNode(long w, long h) {
+        boolean skip = w > 0 && h > 0;
+        int[] stack = nodeStack;
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (node == NONE || (skip && (w > freeWidth(node) || h > freeHeight(node)))) {
+                continue;
+            }
+            if (!used[node]) {
+                if (w <= width(node) && h <= height(node)) {
+                    return node;
+                }
+                continue;
+            }
+            if (top + 2 > stack.length) {
+                stack = nodeStack = Arrays.copyOf(stack, stack.length << 1);
+            }
+            stack[top++] = links[node * 3 + 2];
+            stack[top++] = links[node * 3 + 1];
+        }
+        return NONE;
+    }
+
+    private void splitNode(int node, long w, long h) {
+        long x = x(node), y = y(node), width = width(node), height = height(node);
+        int down = newNode(x, y + h, width, height - h);
+        int right = newNode(x + w, y, width - w, h);
+        used[node] = true;
+        setChildren(node, right, down);
+        updateFreeSize(node);
+    }
+
+    private void updateFreeSize(int start) {
+        for (int node = start; node != NONE && used[node]; node = links[node * 3]) {
+            int right = links[node * 3 + 1], down = links[node * 3 + 2];
+            long fw = Math.max(freeWidth(right), freeWidth(down));
+            long fh = Math.max(freeHeight(right), freeHeight(down));
+            if (node != start && fw == nodes[node * 6 + 4] && fh == nodes[node * 6 + 5]) {
+                break;
+            }
+            nodes[node * 6 + 4] = fw;
+            nodes[node * 6 + 5] = fh;
+        }
+    }
+
+    private long freeWidth(int node) {
+        if (node == NONE) return -1;
+        if (used[node]) return nodes[node * 6 + 4];
+        return width(node) > 0 && height(node) > 0 ? width(node) : -1;
+    }
+
+    private long freeHeight(int node) {
+        if (node == NONE) return -1;
+        if (used[node]) return nodes[node * 6 + 5];
+        return width(node) > 0 && height(node) > 0 ? height(node) : -1;
+    }
+
+    private int newNode(long x, long y, long width, long height) {
+        int node;
+        if (freeCount > 0) {
+            node = freeNodes[--freeCount];
+        } else {
+            if (nodeCount == used.length) {
+                int capacity = nodeCount << 1;
+                nodes = Arrays.copyOf(nodes, capacity * 6);
+                links = Arrays.copyOf(links, capacity * 3);
+                used = Arrays.copyOf(used, capacity);
+            }
+            node = nodeCount++;
+        }
+        nodes[node * 6] = x;
+        nodes[node * 6 + 1] = y;
+        nodes[node * 6 + 2] = width;
+        nodes[node * 6 + 3] = height;
+        links[node * 3] = NONE;
+        links[node * 3 + 1] = NONE;
+        links[node * 3 + 2] = NONE;
+        used[node] = false;
+        return node;
+    }
+
+    private void setChildren(int node, int right, int down) {
+        links[node * 3 + 1] = right;
+        links[node * 3 + 2] = down;
+        if (right != NONE) links[right * 3] = node;
+        if (down != NONE) links[down * 3] = node;
+    }
+
+    private long x(int node) {
+        return nodes[node * 6];
+    }
+
+    private long y(int node) {
+        return nodes[node * 6 + 1];
+    }
+
+    private long width(int node) {
+        return nodes[node * 6 + 2];
+    }
+
+    private long height(int node) {
+        return nodes[node * 6 + 3];
+    }
+}
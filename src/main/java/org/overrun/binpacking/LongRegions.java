@@ -0,0 +1,215 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A growable list of regions with {@code long} sizes and positions, stored in primitive arrays.
+ * <p>
+ * This is the region type of {@link LongGrowingPacker}. Each region is referred to by the index
+ * returned from {@link #add(long, long)}, and nothing is boxed.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var regions = new LongRegions();
+ * int tile = regions.add(3_000_000_000L, 512);
+ * new LongGrowingPacker().fit(regions);
+ * if (regions.fitted(tile)) place(regions.x(tile), regions.y(tile));
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class LongRegions {
+    // 4 longs per region: width, height, x, y
+    private long[] data;
+    private boolean[] fitted;
+    private int size;
+
+    /**
+     * Creates an empty region list.
+     */
+    public LongRegions() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty region list with the given initial capacity.
+     *
+     * @param capacity the initial capacity.
+     */
+    public LongRegions(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        }
+        data = new long[capacity * 4];
+        fitted = new boolean[capacity];
+    }
+
+    /**
+     * Adds a region with the given size.
+     *
+     * @param width  the width.
+     * @param height the height.
+     * @return the index of the region.
+     * @throws IllegalArgumentException if the width or the height is negative.
+     */
+    public int add(long width, long height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Negative size: " + width + "x" + height);
+        }
+        if (size == fitted.length) {
+            int capacity = Math.max(size << 1, 16);
+            data = Arrays.copyOf(data, capacity * 4);
+            fitted = Arrays.copyOf(fitted, capacity);
+        }
+        data[size * 4] = width;
+        data[size * 4 + 1] = height;
+        return size++;
+    }
+
+    /**
+     * Gets the count of regions.
+     *
+     * @return the count of regions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the width of the region at the given index.
+     *
+     * @param index the index.
+     * @return the width.
+     */
+    public long width(int index) {
+        return data[checkIndex(index) * 4];
+    }
+
+    /**
+     * Gets the height of the region at the given index.
+     *
+     * @param index the index.
+     * @return the height.
+     */
+    public long height(int index) {
+        return data[checkIndex(index) * 4 + 1];
+    }
+
+    /**
+     * Returns {@code true} if the region at the given index is fitted.
+     *
+     * @param index the index.
+     * @return {@code true} if the region is fitted.
+     */
+    public boolean fitted(int index) {
+        return fitted[checkIndex(index)];
+    }
+
+    /**
+     * Gets the x position of the region at the given index.
+     *
+     * @param index the index.
+     * @return the x position, or {@code 0} if the region is not fitted.
+     */
+    public long x(int index) {
+        return data[checkIndex(index) * 4 + 2];
+    }
+
+    /**
+     * Gets the y position of the region at the given index.
+     *
+     * @param index the index.
+     * @return the y position, or {@code 0} if the region is not fitted.
+     */
+    public long y(int index) {
+        return data[checkIndex(index) * 4 + 3];
+    }
+
+    /**
+     * Sets the position of the region at the given index.
+     *
+     * @param index the index.
+     * @param x     the x position.
+     * @param y     the y position.
+     */
+    public void setFit(int index, long x, long y) {
+        data[checkIndex(index) * 4 + 2] = x;
+        data[index * 4 + 3] = y;
+        fitted[index] = true;
+    }
+
+    /**
+     * Marks the region at the given index as not fitted.
+     *
+     * @param index the index.
+     */
+    public void clearFit(int index) {
+        data[checkIndex(index) * 4 + 2] = 0;
+        data[index * 4 + 3] = 0;
+        fitted[index] = false;
+    }
+
+    /**
+     * Gets the indices of the regions in the order of {@link Packer#sort(java.util.List) Packer::sort},
+     * that is by height, then width, the largest first.
+     *
+     * @return the sorted indices.
+     */
+    public int[] sortedOrder() {
+        // sort primitive indices, without boxing
+        var order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        sort(order, 0, size, new int[size]);
+        return order;
+    }
+
+    private void sort(int[] order, int from, int to, int[] scratch) {
+        // merge sort, stable so that equal regions keep their order
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        sort(order, from, mid, scratch);
+        sort(order, mid, to, scratch);
+        if (compare(order[mid - 1], order[mid]) <= 0) return;
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) scratch[k++] = compare(order[j], order[i]) < 0 ? order[j++] : order[i++];
+        while (i < mid) scratch[k++] = order[i++];
+        while (j < to) scratch[k++] = order[j++];
+        for (k = from; k < to; k++) order[k] = scratch[k];
+    }
+
+    private int compare(int a, int b) {
+        int c = Long.compare(data[b * 4 + 1], data[a * 4 + 1]);
+        return c != 0 ? c : Long.compare(data[b * 4], data[a * 4]);
+    }
+
+    private int checkIndex(int index) {
+        return Objects.checkIndex(index, size);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the regions of a manifest from a stream, without loading the text whole.
+ * <p>
+ * A CSV manifest has lines of {@code id,width,height}; blank lines and lines starting with
+ * {@code #} are skipped. A JSON manifest is an array of objects with the members {@code id},
+ * {@code width} and {@code height}; other members with scalar values are ignored.
+ * Negative sizes are rejected in both formats.
+ * <p>
+ * The command line packer and the Gradle plugin both read their manifests with this class.
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class ManifestReader {
+    private final Reader reader;
+    private final Path path;
+    private final List<PackerRegion<String>> regions;
+    private int line = 1;
+    private int peeked = -2;
+
+    private ManifestReader(Reader reader, Path path, List<PackerRegion<String>> regions) {
+        this.reader = reader;
+        this.path = path;
+        this.regions = regions;
+    }
+
+    /**
+     * Reads the regions of the given manifest into the given list.
+     *
+     * @param reader  the reader, which should be buffered.
+     * @param path    the path of the manifest, which selects the format by its extension.
+     * @param regions the list to which the regions are added.
+     * @throws IOException if an I/O error occurs or the manifest is malformed.
+     */
+    public static void read(Reader reader, Path path, List<PackerRegion<String>> regions) throws IOException {
+        var manifestReader = new ManifestReader(reader, path, regions);
+        if (path.getFileName().toString().endsWith(".json")) {
+            manifestReader.readJson();
+        } else {
+            manifestReader.readCsv();
+        }
+    }
+
+    /**
+     * Reads the regions of the given manifest file, which is encoded in UTF-8.
+     *
+     * @param path the path of the manifest, which selects the format by its extension.
+     * @return the regions, with the ids as userdata, in the order of the manifest.
+     * @throws IOException if an I/O error occurs or the manifest is malformed.
+     */
+    public static List<PackerRegion<String>> read(Path path) throws IOException {
+        var regions = new ArrayList<PackerRegion<String>>();
+        try (var reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            read(reader, path, regions);
+        }
+        return regions;
+    }
+
+    private void readCsv() throws IOException {
+        var sb = new StringBuilder(64);
+        int c;
+        do {
+            c = reader.read();
+            if (c == '\n' || c == -1) {
+                var text = sb.toString().strip();
+                sb.setLength(0);
+                if (!text.isEmpty() && !text.startsWith("#")) {
+                    var parts = text.split(",");
+                    if (parts.length != 3) {
+                        throw error("expected id,width,height");
+                    }
+                    add(parts[0].strip(), parts[1].strip(), parts[2].strip());
+                }
+                line++;
+            } else {
+                sb.append((char) c);
+            }
+        } while (c != -1);
+    }
+
+    private void readJson() throws IOException {
+        expect('[');
+        if (skipWhitespace() == ']') {
+            next();
+            return;
+        }
+        while (true) {
+            readJsonObject();
+            int c = nextNonWhitespace();
+            if (c == ']') break;
+            if (c != ',') throw error("expected , or ]");
+        }
+        if (nextNonWhitespace() != -1) {
+            throw error("unexpected content after the array");
+        }
+    }
+
+    private void readJsonObject() throws IOException {
+        expect('{');
+        String id = null, width = null, height = null;
+        if (skipWhitespace() == '}') {
+            next();
+        } else {
+            while (true) {
+                expect('"');
+                var key = readJsonString();
+                expect(':');
+                var value = readJsonValue();
+                switch (key) {
+                    case "id" -> id = value;
+                    case "width" -> width = value;
+                    case "height" -> height = value;
+                    default -> {
+                    }
+                }
+                int c = nextNonWhitespace();
+                if (c == '}') break;
+                if (c != ',') throw error("expected , or }");
+            }
+        }
+        if (id == null || width == null || height == null) {
+            throw error("expected id, width and height");
+        }
+        add(id, width, height);
+    }
+
+    private String readJsonValue() throws IOException {
+        int c = skipWhitespace();
+        if (c == '"') {
+            next();
+            return readJsonString();
+        }
+        if (c == '{' || c == '[') {
+            throw error("nested values are not supported");
+        }
+        var sb = new StringBuilder(16);
+        while ((c = peek()) != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+            sb.append((char) next());
+        }
+        if (sb.isEmpty()) {
+            throw error("expected a value");
+        }
+        return sb.toString();
+    }
+
+    private String readJsonString() throws IOException {
+        var sb = new StringBuilder(32);
+        while (true) {
+            int c = next();
+            if (c == -1 || c == '\n') throw error("unterminated string");
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append((char) c);
+                continue;
+            }
+            c = next();
+            switch (c) {
+                case '"', '\\', '/' -> sb.append((char) c);
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(next(), 16);
+                        if (digit < 0) throw error("invalid unicode escape");
+                        code = code << 4 | digit;
+                    }
+                    sb.append((char) code);
+                }
+                default -> throw error("invalid escape");
+            }
+        }
+    }
+
+    private void add(String id, String width, String height) throws IOException {
+        int w, h;
+        try {
+            w = Integer.parseInt(width);
+            h = Integer.parseInt(height);
+        } catch (NumberFormatException e) {
+            throw error("invalid size");
+        }
+        if (w < 0 || h < 0) {
+            throw error("invalid size");
+        }
+        regions.add(PackerRegion.delegate(PackerRegion.sized(w, h), id));
+    }
+
+    private void expect(int expected) throws IOException {
+        if (nextNonWhitespace() != expected) {
+            throw error("expected " + (char) expected);
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) != -1 && Character.isWhitespace(c)) next();
+        return c;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        skipWhitespace();
+        return next();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        peeked = -2;
+        if (c == '\n') line++;
+        return c;
+    }
+
+    private IOException error(String message) {
+        return new IOException(path + ":" + line + ": " + message);
+    }
+}
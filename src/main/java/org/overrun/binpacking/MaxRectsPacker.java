@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import org.overrun.binpacking.internal.FreeRectList;
+
+import java.util.List;
+
+/**
+ * A bin packing algorithm that keeps a list of the maximal free rectangles of a fixed
+ * width and height, and places each block in the free rectangle that leaves the shortest
+ * side (best short side fit).
+ * <p>
+ * The free rectangles are stored in primitive arrays, and the search for the best fit is
+ * vectorized with the incubating Vector API if the module {@code jdk.incubator.vector} is resolved.
+ * This usually packs denser than {@link FixedPacker}, at a higher cost per block.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var packer = new MaxRectsPacker(1024, 1024);
+ * packer.fit(Packer.sort(regions));
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class MaxRectsPacker extends Packer {
+    private final int width, height;
+    private final FreeRectList freeRects = new FreeRectList();
+
+    /**
+     * Creates a new max rects packer with the given size.
+     *
+     * @param width  width of target rectangle.
+     * @param height height of target rectangle.
+     */
+    public MaxRectsPacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public void fit(List<? extends PackerRegion<?>> regions) {
+        freeRects.reset(width, height);
+        int[] sizes = readSizes(regions);
+        int[] fits = newFits(regions.size());
+        for (int i = 0, size = regions.size(); i < size; i++) {
+            int w = sizes[i * 2];
+            int h = sizes[i * 2 + 1];
+            int index = freeRects.findBestFit(w, h);
+            if (index >= 0) {
+                int x = freeRects.x(index);
+                int y = freeRects.y(index);
+                freeRects.occupy(x, y, w, h);
+                fits[i * 2] = x;
+                fits[i * 2 + 1] = y;
+            }
+        }
+        writeFits(regions, fits);
+    }
+
+    /**
+     * Gets the count of free rectangles after the last fit.
+     *
+     * @return the count of free rectangles.
+     */
+    public int freeCount() {
+        return freeRects.count();
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+}
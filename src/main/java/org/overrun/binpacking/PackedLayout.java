@@ -0,0 +1,471 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable snapshot of a packed layout, where each region may be identified by a string id.
+ * <p>
+ * A layout can be {@linkplain #write(OutputStream) written} at build time and
+ * {@linkplain #read(InputStream) read} at runtime, so that fixed layouts do not have to be
+ * packed on every launch.
+ * <p>
+ * A layout has a uniform grid index over the fitted regions, which finds the region covering a
+ * point or the regions intersecting a rectangle in about constant time. A layout can be
+ * shared freely across threads.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var layout = PackedLayout.read(getResourceAsStream("atlas.layout"));
+ * layout.find("stone").ifPresent(fit -> TexSubImage(fit.x(), fit.y(), ...));
+ * int picked = layout.indexAt(mouseX, mouseY);
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class PackedLayout {
+    private static final int MAGIC = 0x42504C59; // BPLY
+    private static final int VERSION = 1;
+    private static final int FLAG_FITTED = 1, FLAG_ROTATED = 2, FLAG_NO_ID = 4;
+    private final int width, height;
+    private final String[] ids;
+    private final int[] bounds;
+    private final byte[] flags;
+    private final Map<String, Integer> indices;
+    // the grid index: the regions overlapping cell c are cellItems[cellStarts[c]..cellStarts[c + 1]]
+    private final int cellSize, cols, rows;
+    private final int[] cellStarts, cellItems;
+
+    private PackedLayout(int width, int height, String[] ids, int[] bounds, byte[] flags) {
+        this.width = width;
+        this.height = height;
+        this.ids = ids;
+        this.bounds = bounds;
+        this.flags = flags;
+        this.indices = new HashMap<>(ids.length * 4 / 3 + 1);
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != null && indices.putIfAbsent(ids[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate id: " + ids[i]);
+            }
+        }
+
+        // cells of about the average size of the regions, but at most 4 cells per region
+        long area = 0;
+        int fitted = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (fitted(i)) {
+                area += (long) occupiedWidth(i) * occupiedHeight(i);
+                fitted++;
+            }
+        }
+        long minCellArea = Math.max((long) width * height / Math.max(fitted * 4L, 1L), 1L);
+        cellSize = (int) Math.max(Math.ceil(Math.sqrt(Math.max(area / Math.max(fitted, 1), minCellArea))), 1);
+        cols = Math.max((int) (((long) width + cellSize - 1) / cellSize), 1);
+        rows = Math.max((int) (((long) height + cellSize - 1) / cellSize), 1);
+        cellStarts = new int[cols * rows + 1];
+        for (int i = 0; i < ids.length; i++) {
+            forEachCell(i, cell -> cellStarts[cell + 1]++);
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStarts[c + 1] += cellStarts[c];
+        }
+        cellItems = new int[cellStarts[cols * rows]];
+        var ends = Arrays.copyOf(cellStarts, cols * rows);
+        for (int i = 0; i < ids.length; i++) {
+            int index = i;
+            forEachCell(i, cell -> cellItems[ends[cell]++] = index);
+        }
+    }
+
+    private void forEachCell(int index, IntConsumer action) {
+        if (!fitted(index) || occupiedWidth(index) <= 0 || occupiedHeight(index) <= 0) return;
+        int c0 = cellX(x(index)), c1 = cellX(x(index) + occupiedWidth(index) - 1);
+        int r0 = cellY(y(index)), r1 = cellY(y(index) + occupiedHeight(index) - 1);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                action.accept(r * cols + c);
+            }
+        }
+    }
+
+    /**
+     * Creates a layout from the given fitted packer and regions, using the userdata as the ids.
+     *
+     * @param packer  the packer that fitted the regions.
+     * @param regions the regions.
+     * @return the layout.
+     * @throws IllegalArgumentException if the ids are not unique.
+     */
+    public static PackedLayout of(Packer packer, List<? extends PackerRegion<String>> regions) {
+        return of(packer, regions, userdata -> (String) userdata);
+    }
+
+    /**
+     * Creates a layout from the given fitted packer and regions, with the given function
+     * that computes the ids from the userdata.
+     *
+     * @param packer  the packer that fitted the regions.
+     * @param regions the regions.
+     * @param id      the function that computes the id from the userdata, which may return {@code null} for no id.
+     * @return the layout.
+     * @throws IllegalArgumentException if the ids are not unique.
+     */
+    public static PackedLayout of(Packer packer, List<? extends PackerRegion<?>> regions, Function<Object, String> id) {
+        int size = regions.size();
+        var ids = new String[size];
+        var bounds = new int[size * 4];
+        var flags = new byte[size];
+        for (int i = 0; i < size; i++) {
+            var region = regions.get(i);
+            ids[i] = id.apply(region.userdata());
+            var fit = region.fit().orElse(null);
+            if (fit != null) {
+                flags[i] = (byte) (FLAG_FITTED | (fit.rotated() ? FLAG_ROTATED : 0));
+                bounds[i * 4] = fit.x();
+                bounds[i * 4 + 1] = fit.y();
+            }
+            bounds[i * 4 + 2] = region.width();
+            bounds[i * 4 + 3] = region.height();
+        }
+        return new PackedLayout(packer.width(), packer.height(), ids, bounds, flags);
+    }
+
+    /**
+     * Reads a layout written by {@link #write(OutputStream)}. The stream is not closed.
+     *
+     * @param in the input stream.
+     * @return the layout.
+     * @throws IOException if an I/O error occurs, the stream is not a layout or a region lies outside the layout.
+     */
+    public static PackedLayout read(InputStream in) throws IOException {
+        var data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a packed layout");
+        }
+        int version = data.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported packed layout version: " + version);
+        }
+        int width = data.readInt();
+        int height = data.readInt();
+        if (width < 0 || height < 0) {
+            throw new IOException("Invalid layout size: " + width + "x" + height);
+        }
+        int size = data.readInt();
+        if (size < 0 || size > Integer.MAX_VALUE / 4) {
+            throw new IOException("Invalid region count: " + size);
+        }
+        var ids = new String[size];
+        var bounds = new int[size * 4];
+        var flags = new byte[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = data.readUTF();
+            flags[i] = data.readByte();
+            if ((flags[i] & FLAG_NO_ID) != 0) ids[i] = null;
+            for (int j = 0; j < 4; j++) {
+                bounds[i * 4 + j] = data.readInt();
+            }
+            // the grid index trusts the bounds, so reject regions outside the layout
+            int x = bounds[i * 4], y = bounds[i * 4 + 1], w = bounds[i * 4 + 2], h = bounds[i * 4 + 3];
+            boolean rotated = (flags[i] & FLAG_ROTATED) != 0;
+            if (w < 0 || h < 0 || ((flags[i] & FLAG_FITTED) != 0 &&
+                                   (x < 0 || y < 0 ||
+                                    (long) x + (rotated ? h : w) > width ||
+                                    (long) y + (rotated ? w : h) > height))) {
+                throw new IOException("Invalid bounds of region " + i + ": " + x + ", " + y + ", " + w + "x" + h);
+            }
+        }
+        try {
+            return new PackedLayout(width, height, ids, bounds, flags);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes this layout in a compact binary form. The stream is flushed but not closed.
+     *
+     * @param out the output stream.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void write(OutputStream out) throws IOException {
+        var data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeInt(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            data.writeUTF(ids[i] != null ? ids[i] : "");
+            data.writeByte(flags[i] | (ids[i] != null ? 0 : FLAG_NO_ID));
+            for (int j = 0; j < 4; j++) {
+                data.writeInt(bounds[i * 4 + j]);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Gets the width of the packer that produced this layout.
+     *
+     * @return the width.
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the packer that produced this layout.
+     *
+     * @return the height.
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Gets the count of regions in this layout.
+     *
+     * @return the count of regions.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Gets the index of the region with the given id.
+     *
+     * @param id the id.
+     * @return the index, or {@code -1} if absent.
+     */
+    public int indexOf(String id) {
+        return indices.getOrDefault(id, -1);
+    }
+
+    /**
+     * Gets the fit position of the region with the given id.
+     *
+     * @param id the id.
+     * @return the fit position, or empty if the region is absent or did not fit.
+     */
+    public Optional<PackerFitPos> find(String id) {
+        int index = indexOf(id);
+        return index >= 0 ? fit(index) : Optional.empty();
+    }
+
+    /**
+     * Gets the id of the region at the given index.
+     *
+     * @param index the index.
+     * @return the id, or {@code null} if the region has no id.
+     */
+    public String id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Gets the fit position of the region at the given index.
+     *
+     * @param index the index.
+     * @return the fit position, or empty if the region did not fit.
+     */
+    public Optional<PackerFitPos> fit(int index) {
+        if (!fitted(index)) return Optional.empty();
+        return Optional.of(PackerFitPos.of(x(index), y(index), rotated(index)));
+    }
+
+    /**
+     * Returns {@code true} if the region at the given index fitted.
+     *
+     * @param index the index.
+     * @return {@code true} if the region fitted.
+     */
+    public boolean fitted(int index) {
+        return (flags[index] & FLAG_FITTED) != 0;
+    }
+
+    /**
+     * Returns {@code true} if the region at the given index is rotated.
+     *
+     * @param index the index.
+     * @return {@code true} if the region is rotated.
+     */
+    public boolean rotated(int index) {
+        return (flags[index] & FLAG_ROTATED) != 0;
+    }
+
+    /**
+     * Gets the x position of the region at the given index.
+     *
+     * @param index the index.
+     * @return the x position.
+     */
+    public int x(int index) {
+        return bounds[index * 4];
+    }
+
+    /**
+     * Gets the y position of the region at the given index.
+     *
+     * @param index the index.
+     * @return the y position.
+     */
+    public int y(int index) {
+        return bounds[index * 4 + 1];
+    }
+
+    /**
+     * Gets the width of the region at the given index, before rotation.
+     *
+     * @param index the index.
+     * @return the width.
+     */
+    public int regionWidth(int index) {
+        return bounds[index * 4 + 2];
+    }
+
+    /**
+     * Gets the height of the region at the given index, before rotation.
+     *
+     * @param index the index.
+     * @return the height.
+     */
+    public int regionHeight(int index) {
+        return bounds[index * 4 + 3];
+    }
+
+    /**
+     * Gets the width that the region at the given index occupies, after rotation.
+     *
+     * @param index the index.
+     * @return the occupied width.
+     */
+    public int occupiedWidth(int index) {
+        return rotated(index) ? regionHeight(index) : regionWidth(index);
+    }
+
+    /**
+     * Gets the height that the region at the given index occupies, after rotation.
+     *
+     * @param index the index.
+     * @return the occupied height.
+     */
+    public int occupiedHeight(int index) {
+        return rotated(index) ? regionWidth(index) : regionHeight(index);
+    }
+
+    /**
+     * Gets the index of the fitted region that covers the given point.
+     *
+     * @param x the x position.
+     * @param y the y position.
+     * @return the index of the region, or {@code -1} if none covers the point.
+     */
+    public int indexAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= (long) cols * cellSize || y >= (long) rows * cellSize) {
+            return -1;
+        }
+        int cell = cellY(y) * cols + cellX(x);
+        for (int k = cellStarts[cell], end = cellStarts[cell + 1]; k < end; k++) {
+            int i = cellItems[k];
+            if (x >= x(i) && y >= y(i) && x - x(i) < occupiedWidth(i) && y - y(i) < occupiedHeight(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Performs the given action with the index of each fitted region that intersects the given rectangle.
+     * Each region is reported once, in no particular order.
+     *
+     * @param x      the x position of the rectangle.
+     * @param y      the y position of the rectangle.
+     * @param w      the width of the rectangle.
+     * @param h      the height of the rectangle.
+     * @param action the action to be performed.
+     */
+    public void forEachIntersecting(int x, int y, int w, int h, IntConsumer action) {
+        if (w <= 0 || h <= 0) return;
+        long right = (long) x + w, bottom = (long) y + h;
+        if (right <= 0 || bottom <= 0 || x >= (long) cols * cellSize || y >= (long) rows * cellSize) return;
+        int c0 = cellX(Math.max(x, 0)), c1 = cellX((int) Math.min(right - 1, (long) cols * cellSize - 1));
+        int r0 = cellY(Math.max(y, 0)), r1 = cellY((int) Math.min(bottom - 1, (long) rows * cellSize - 1));
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int k = cellStarts[cell], end = cellStarts[cell + 1]; k < end; k++) {
+                    int i = cellItems[k];
+                    int ix = x(i), iy = y(i);
+                    if (ix >= right || iy >= bottom || (long) ix + occupiedWidth(i) <= x || (long) iy + occupiedHeight(i) <= y) {
+                        continue;
+                    }
+                    // report the region only in the cell of the top-left corner of the intersection
+                    if (cellX(Math.max(ix, Math.max(x, 0))) == c && cellY(Math.max(iy, Math.max(y, 0))) == r) {
+                        action.accept(i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the indices of the fitted regions that intersect the given rectangle.
+     *
+     * @param x the x position of the rectangle.
+     * @param y the y position of the rectangle.
+     * @param w the width of the rectangle.
+     * @param h the height of the rectangle.
+     * @return the indices, in no particular order.
+     */
+    public int[] indicesIntersecting(int x, int y, int w, int h) {
+        var builder = IntStream.builder();
+        forEachIntersecting(x, y, w, h, builder);
+        return builder.build().toArray();
+    }
+
+    private int cellX(int x) {
+        return Math.min(x / cellSize, cols - 1);
+    }
+
+    private int cellY(int y) {
+        return Math.min(y / cellSize, rows - 1);
+    }
+}
@@ -35,7 +35,7 @@ import java.util.List;
  * @author squid233
  * @since 0.1.0
  */
-public sealed abstract class Packer implements PackerRegionSize permits FixedPacker, GrowingPacker {
+public sealed abstract class Packer implements PackerRegionSize permits AnnealingPacker, AutoPacker, BestOfPacker, BuddyPacker, DedupPacker, ExactPacker, FixedPacker, GroupedPacker, GrowingPacker, MaxRectsPacker, ShardedPacker, StripPacker {
     /**
      * Sorts the given region array with height, then width.
      * <p>
@@ -67,20 +67,139 @@ public sealed abstract class Packer implements PackerRegionSize permits FixedPac
         return regions;
     }
 
+    /**
+     * The x position in the fit positions of {@link #newFits(int)} that leaves the region unchanged.
+     */
+    static final int FIT_UNCHANGED = -1;
+    /**
+     * The x position in the fit positions of {@link #newFits(int)} that removes the fit of the region.
+     */
+    static final int FIT_NONE = -2;
+    private PackerNode[] nodeStack = new PackerNode[32];
+
+    /**
+     * Finds the first free node, right before down, that the given size fits in.
+     * <p>
+     * The traversal uses an explicit stack, so it does not depend on the depth of the tree,
+     * and skips the subtrees whose {@linkplain PackerNode#freeWidth() free size} is too small.
+     * Empty regions may still fit in empty nodes, so they are searched without skipping.
+     */
     PackerNode findNode(PackerNode root, int w, int h) {
-        if (root.used()) {
-            PackerNode node = findNode(root.right(), w, h);
-            if (node != null) {
-                return node;
+        boolean skip = w > 0 && h > 0;
+        PackerNode[] stack = nodeStack;
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            PackerNode node = stack[--top];
+            if (node == null || (skip && (w > node.freeWidth() || h > node.freeHeight()))) {
+                continue;
             }
-            return findNode(root.down(), w, h);
-        }
-        if (w <= root.width() && h <= root.height()) {
-            return root;
+            if (!node.used()) {
+                if (w <= node.width() && h <= node.height()) {
+                    return node;
+                }
+                continue;
+            }
+            if (top + 2 > stack.length) {
+                stack = nodeStack = Arrays.copyOf(stack, stack.length << 1);
+            }
+            stack[top++] = node.down();
+            stack[top++] = node.right();
         }
         return null;
     }
 
+    /**
+     * Splits the given free node into the used part with the given size,
+     * the part to its right and the part below it.
+     */
+    static PackerNode splitNode(PackerNode node, int w, int h) {
+        return node.markUsed()
+            .setDown(new PackerNode()
+                .setX(node.x())
+                .setY(node.y() + h)
+                .setWidth(node.width())
+                .setHeight(node.height() - h))
+            .setRight(new PackerNode()
+                .setX(node.x() + w)
+                .setY(node.y())
+                .setWidth(node.width() - w)
+                .setHeight(h))
+            .updateFreeSize();
+    }
+
+    /**
+     * Reads the sizes of the given regions once, as pairs of width and height, so that the
+     * packing loops run over primitives instead of calling the regions.
+     */
+    static int[] readSizes(List<? extends PackerRegionSize> regions) {
+        int size = regions.size();
+        int[] sizes = new int[size * 2];
+        for (int i = 0; i < size; i++) {
+            var region = regions.get(i);
+            sizes[i * 2] = region.width();
+            sizes[i * 2 + 1] = region.height();
+        }
+        return sizes;
+    }
+
+    /**
+     * Creates the fit positions of the given count of regions, as pairs of x and y,
+     * which are all {@link #FIT_UNCHANGED}.
+     */
+    static int[] newFits(int count) {
+        int[] fits = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            fits[i * 2] = FIT_UNCHANGED;
+        }
+        return fits;
+    }
+
+    /**
+     * Sets the fit positions of the given regions in one pass.
+     */
+    static void writeFits(List<? extends PackerRegion<?>> regions, int[] fits) {
+        for (int i = 0, size = regions.size(); i < size; i++) {
+            int x = fits[i * 2];
+            if (x == FIT_NONE) {
+                regions.get(i).setFit(null);
+            } else if (x != FIT_UNCHANGED) {
+                regions.get(i).setFit(PackerFitPos.of(x, fits[i * 2 + 1]));
+            }
+        }
+    }
+
+    /**
+     * Counts the regions starting at {@code from} that have the same size as it.
+     * Empty regions are never counted as a run.
+     */
+    static int runLength(int[] sizes, int from) {
+        int w = sizes[from * 2], h = sizes[from * 2 + 1];
+        if (w <= 0 || h <= 0) {
+            return 1;
+        }
+        int end = from + 1;
+        for (int count = sizes.length >> 1; end < count; end++) {
+            if (sizes[end * 2] != w || sizes[end * 2 + 1] != h) {
+                break;
+            }
+        }
+        return end - from;
+    }
+
+    /**
+     * Sets the fit positions of {@code cols * rows} regions starting at {@code from}
+     * to the cells of a grid at the given position, row by row.
+     */
+    static void fitGrid(int[] fits, int from, int cols, int rows, int x, int y, int w, int h) {
+        for (int row = 0, i = from; row < rows; row++) {
+            for (int col = 0; col < cols; col++, i++) {
+                fits[i * 2] = x + col * w;
+                fits[i * 2 + 1] = y + row * h;
+            }
+        }
+    }
+
     /**
      * Fits this packer with the given regions.
      *
@@ -88,6 +207,36 @@ public sealed abstract class Packer implements PackerRegionSize permits FixedPac
      */
     public abstract void fit(List<? extends PackerRegion<?>> regions);
 
+    /**
+     * Fits this packer with the given regions, searching for a better layout until the deadline expires.
+     * <p>
+     * The default implementation fits the regions in a single pass, which always completes,
+     * so it returns {@code true} even if the pass ran past the deadline.
+     *
+     * @param regions  the regions.
+     * @param deadline the deadline.
+     * @return {@code true} if the search completed before the deadline expired.
+     * @since 0.6.0
+     */
+    public boolean fit(List<? extends PackerRegion<?>> regions, Deadline deadline) {
+        fit(regions);
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if this packer keeps its state across fits, so that each fit places only
+     * the given regions in the space left by the previous fits and the placed regions never move.
+     * Otherwise, each fit packs the given regions from scratch, and all regions must be passed again.
+     * <p>
+     * The default implementation returns {@code false}.
+     *
+     * @return {@code true} if this packer fits incrementally.
+     * @since 0.6.0
+     */
+    public boolean incremental() {
+        return false;
+    }
+
     /**
      * Gets the width of the root node of this packer.
      *
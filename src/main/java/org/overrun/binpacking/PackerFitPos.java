@@ -44,6 +44,19 @@ public interface PackerFitPos {
         return new PackerFitPosImpl(x, y);
     }
 
+    /**
+     * Creates the fit position.
+     *
+     * @param x       the x position.
+     * @param y       the y position.
+     * @param rotated {@code true} if the region is rotated by 90 degrees.
+     * @return the position.
+     * @since 0.6.0
+     */
+    static PackerFitPos of(int x, int y, boolean rotated) {
+        return new PackerFitPosImpl(x, y, rotated);
+    }
+
     /**
      * Gets the x position.
      *
@@ -57,4 +70,15 @@ public interface PackerFitPos {
      * @return the y position.
      */
     int y();
+
+    /**
+     * Returns {@code true} if the region is rotated by 90 degrees, so that it occupies
+     * its height horizontally and its width vertically.
+     *
+     * @return {@code true} if the region is rotated.
+     * @since 0.6.0
+     */
+    default boolean rotated() {
+        return false;
+    }
 }
@@ -67,6 +67,21 @@ public interface PackerRegion<T> extends PackerRegionSize, Comparable<PackerRegi
         return new DelegateRegion<>(size, userdata);
     }
 
+    /**
+     * Creates a delegated region with the given instance of size, userdata and group.
+     *
+     * @param size     the size of the region.
+     * @param userdata the userdata to be stored in the region.
+     * @param group    the group of the region. defaults to {@code null}.
+     * @param <T>      the type of the userdata.
+     * @return the region.
+     * @see #group()
+     * @since 0.6.0
+     */
+    static <T> PackerRegion<T> grouped(PackerRegionSize size, T userdata, @Nullable Object group) {
+        return new DelegateRegion<>(size, userdata, group);
+    }
+
     /**
      * Sets the fit position of this region.
      *
@@ -99,6 +114,21 @@ public interface PackerRegion<T> extends PackerRegionSize, Comparable<PackerRegi
      */
     T userdata();
 
+    /**
+     * Gets the group of this region.
+     * <p>
+     * Regions of the same group are sampled together, such as the glyphs of a string or
+     * the frames of an animation. {@link GroupedPacker} keeps them close together. Groups are
+     * compared with {@link Object#equals(Object) equals}. Defaults to {@code null}, which is
+     * no group.
+     *
+     * @return the group.
+     * @since 0.6.0
+     */
+    default @Nullable Object group() {
+        return null;
+    }
+
     @Override
     default int compareTo(@NotNull PackerRegion o) {
         if (o.height() < height()) return -1;
@@ -0,0 +1,246 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * A packer that partitions the regions by size class into shards, packs the shards in parallel,
+ * then arranges the shards into the atlas.
+ * <p>
+ * The regions are sorted by the maximum side and cut into {@linkplain #shards(int) shards}
+ * of about the same area, so that each shard holds a band of similar sizes. Each shard is packed
+ * by its own packer, created with a size estimated from the areas: all shards have the width of
+ * a square atlas, and the height of a shard follows from its area. A fixed size packer is created
+ * again with a larger height until all regions of the shard fit. The bounding boxes of the shards,
+ * which have about the same width, are then packed by the arranging packer.
+ * <p>
+ * The shards are independent, so the packing scales with the cores at a small loss of density.
+ * With a single shard, this is the same as the packer of the shards.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var packer = new ShardedPacker((w, h) -> new FixedPacker(w, h), GrowingPacker::new).shards(8);
+ * packer.fit(regions);
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class ShardedPacker extends Packer {
+    private static final Comparator<PackerRegionSize> ORDER =
+        Comparator.<PackerRegionSize>comparingInt(r -> Math.max(r.width(), r.height()))
+            .thenComparingInt(r -> Math.min(r.width(), r.height()))
+            .reversed();
+    private final BiFunction<Integer, Integer, ? extends Packer> shardPacker;
+    private final Supplier<? extends Packer> arranger;
+    private int shards = Runtime.getRuntime().availableProcessors();
+    private int minShardRegions = 1024;
+    private double fillRate = 0.85;
+    private int width, height;
+
+    /**
+     * Creates a new sharded packer.
+     *
+     * @param shardPacker the function that creates the packer of a shard from the estimated width and height.
+     * @param arranger    the factory that creates the packer that arranges the shards.
+     */
+    public ShardedPacker(BiFunction<Integer, Integer, ? extends Packer> shardPacker, Supplier<? extends Packer> arranger) {
+        this.shardPacker = shardPacker;
+        this.arranger = arranger;
+    }
+
+    /**
+     * Creates a new sharded packer that packs the shards with {@link StripPacker}s and arranges them
+     * with a {@link GrowingPacker}.
+     */
+    public ShardedPacker() {
+        this((w, h) -> new StripPacker(w), GrowingPacker::new);
+    }
+
+    /**
+     * Sets the maximum count of shards. Defaults to the count of available processors.
+     * Fewer shards pack denser.
+     *
+     * @param shards the maximum count of shards.
+     * @return this.
+     */
+    public ShardedPacker shards(int shards) {
+        this.shards = Math.max(shards, 1);
+        return this;
+    }
+
+    /**
+     * Sets the minimum count of regions in a shard. Defaults to {@code 1024}.
+     * Larger shards pack denser.
+     *
+     * @param minShardRegions the minimum count of regions.
+     * @return this.
+     */
+    public ShardedPacker minShardRegions(int minShardRegions) {
+        this.minShardRegions = Math.max(minShardRegions, 1);
+        return this;
+    }
+
+    /**
+     * Sets the expected ratio of the area of the regions to the area of a shard, from which
+     * the size of a shard is estimated. Defaults to {@code 0.85}.
+     *
+     * @param fillRate the fill rate, in {@code (0, 1]}.
+     * @return this.
+     */
+    public ShardedPacker fillRate(double fillRate) {
+        if (!(fillRate > 0 && fillRate <= 1)) {
+            throw new IllegalArgumentException("Invalid fill rate: " + fillRate);
+        }
+        this.fillRate = fillRate;
+        return this;
+    }
+
+    @Override
+    public void fit(List<? extends PackerRegion<?>> regions) {
+        int size = regions.size();
+        var sorted = new ArrayList<PackerRegion<?>>(regions);
+        sorted.sort(ORDER);
+        long totalArea = 0;
+        for (var region : sorted) {
+            totalArea += (long) region.width() * region.height();
+        }
+
+        // cut the sorted regions into shards of about the same area
+        int count = Math.max(Math.min(shards, size / minShardRegions), 1);
+        var bounds = new int[count + 1];
+        long area = 0;
+        for (int i = 0, shard = 1; i < size && shard < count; i++) {
+            area += (long) sorted.get(i).width() * sorted.get(i).height();
+            if (area * count >= totalArea * shard) {
+                bounds[shard++] = i + 1;
+            }
+        }
+        for (int shard = 1; shard <= count; shard++) {
+            bounds[shard] = Math.max(bounds[shard], bounds[shard - 1]);
+        }
+        bounds[count] = size;
+
+        // all shards have the width of a square atlas, so that they stack with little waste
+        long atlasWidth = (long) Math.ceil(Math.sqrt(totalArea / fillRate));
+        var extents = new int[count][];
+        IntStream.range(0, count).parallel().forEach(shard ->
+            extents[shard] = packShard(sorted.subList(bounds[shard], bounds[shard + 1]), atlasWidth));
+        // the boxes get the same width, so that a growing arranger stacks them
+        int boxWidth = 0;
+        long stackHeight = 0;
+        for (int[] extent : extents) {
+            boxWidth = Math.max(boxWidth, extent[0]);
+            stackHeight += extent[1];
+        }
+        // a stack slightly higher than wide would open a second column of the width of the atlas
+        if (stackHeight > boxWidth && stackHeight - boxWidth <= boxWidth >>> 3) {
+            boxWidth = (int) stackHeight;
+        }
+        var boxes = new ArrayList<PackerRegion<Integer>>(count);
+        for (int shard = 0; shard < count; shard++) {
+            boxes.add(PackerRegion.delegate(PackerRegion.sized(boxWidth, extents[shard][1]), shard));
+        }
+
+        // arrange the shards, the largest first
+        var arrangement = new ArrayList<PackerRegion<Integer>>(boxes);
+        arrangement.sort(ORDER);
+        var packer = arranger.get();
+        packer.fit(arrangement);
+        // the boxes may be wider than their shards, so the size is the extent of the shards in their boxes
+        width = 0;
+        height = 0;
+        for (var box : boxes) {
+            var offset = box.fit().orElse(null);
+            if (offset != null && extents[box.userdata()][1] > 0) {
+                width = Math.max(width, offset.x() + extents[box.userdata()][0]);
+                height = Math.max(height, offset.y() + extents[box.userdata()][1]);
+            }
+            for (var region : sorted.subList(bounds[box.userdata()], bounds[box.userdata() + 1])) {
+                var fit = region.fit().orElse(null);
+                region.setFit(offset != null && fit != null
+                    ? PackerFitPos.of(offset.x() + fit.x(), offset.y() + fit.y(), fit.rotated())
+                    : null);
+            }
+        }
+    }
+
+    /**
+     * Packs the given shard.
+     *
+     * @return the width and height of the bounding box of the shard.
+     */
+    private int[] packShard(List<PackerRegion<?>> regions, long atlasWidth) {
+        long area = 0;
+        int maxWidth = 0, maxHeight = 0;
+        for (var region : regions) {
+            area += (long) region.width() * region.height();
+            maxWidth = Math.max(maxWidth, region.width());
+            maxHeight = Math.max(maxHeight, region.height());
+        }
+        long w = Math.max(atlasWidth, maxWidth);
+        long h = Math.max((long) Math.ceil(area / fillRate / Math.max(w, 1)), maxHeight);
+        while (true) {
+            for (var region : regions) {
+                region.setFit(null);
+            }
+            shardPacker.apply((int) Math.min(w, Integer.MAX_VALUE), (int) Math.min(h, Integer.MAX_VALUE)).fit(regions);
+            boolean all = true;
+            int extentWidth = 0, extentHeight = 0;
+            for (var region : regions) {
+                var fit = region.fit().orElse(null);
+                if (fit == null) {
+                    all = false;
+                    continue;
+                }
+                boolean rotated = fit.rotated();
+                extentWidth = Math.max(extentWidth, fit.x() + (rotated ? region.height() : region.width()));
+                extentHeight = Math.max(extentHeight, fit.y() + (rotated ? region.width() : region.height()));
+            }
+            if (all || h >= Integer.MAX_VALUE) {
+                return new int[]{extentWidth, extentHeight};
+            }
+            // enlarge the estimate, keeping the width shared by the shards
+            h += Math.max(h >>> 3, 1);
+        }
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+}
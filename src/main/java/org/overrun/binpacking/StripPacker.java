@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bin packing algorithm with a fixed width and an unbounded height, which minimizes the
+ * height of the strip, for scrollable sprite sheets and streaming texture strips.
+ * <p>
+ * The packer keeps the skyline of the strip, that is the bottom edge of the placed blocks, as a list
+ * of horizontal segments. Each block is placed on the skyline where its bottom edge is the
+ * smallest, then the leftmost.
+ * <p>
+ * The growth is append-only: like {@link FixedPacker}, this packer keeps its state across fits,
+ * a placed block never moves, and a block is only placed below the skyline. The rows above
+ * {@link #settledHeight()} are therefore never touched again when the strip grows.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * var packer = new StripPacker(2048);
+ * packer.fit(Packer.sort(regions));
+ * int uploaded = packer.settledHeight();
+ * uploadRows(0, uploaded);
+ * packer.fit(Packer.sort(moreRegions));
+ * uploadRows(uploaded, packer.height());
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class StripPacker extends Packer {
+    private final int width;
+    private int height;
+    // the skyline segments from left to right
+    private int[] segmentX = new int[16], segmentY = new int[16], segmentWidth = new int[16];
+    private int segmentCount;
+
+    /**
+     * Creates a new strip packer with the given width.
+     *
+     * @param width width of the strip.
+     */
+    public StripPacker(int width) {
+        this.width = width;
+        segmentWidth[0] = width;
+        segmentCount = 1;
+    }
+
+    @Override
+    public void fit(List<? extends PackerRegion<?>> regions) {
+        int[] sizes = readSizes(regions);
+        int[] fits = newFits(regions.size());
+        for (int r = 0, size = regions.size(); r < size; r++) {
+            int w = sizes[r * 2];
+            int h = sizes[r * 2 + 1];
+            if (w <= 0 || h <= 0) {
+                fits[r * 2] = 0;
+                fits[r * 2 + 1] = 0;
+                continue;
+            }
+            if (w > width) {
+                continue;
+            }
+            int best = -1, bestY = 0;
+            long bestTop = Long.MAX_VALUE;
+            for (int i = 0; i < segmentCount && segmentX[i] + w <= width; i++) {
+                int y = 0;
+                for (int j = i, covered = 0; covered < w; covered += segmentWidth[j++]) {
+                    y = Math.max(y, segmentY[j]);
+                    if ((long) y + h >= bestTop) break;
+                }
+                if ((long) y + h < bestTop) {
+                    best = i;
+                    bestY = y;
+                    bestTop = (long) y + h;
+                }
+            }
+            if (best < 0 || bestTop > Integer.MAX_VALUE) {
+                continue;
+            }
+            int x = segmentX[best];
+            place(best, x, (int) bestTop, w);
+            height = Math.max(height, (int) bestTop);
+            fits[r * 2] = x;
+            fits[r * 2 + 1] = bestY;
+        }
+        writeFits(regions, fits);
+    }
+
+    private void place(int index, int x, int top, int w) {
+        // the segments covered by the block, the last one may be covered partially
+        int end = index;
+        int right = x + w;
+        while (end < segmentCount && segmentX[end] + segmentWidth[end] <= right) end++;
+        if (end < segmentCount && segmentX[end] < right) {
+            segmentWidth[end] -= right - segmentX[end];
+            segmentX[end] = right;
+        }
+        // replace the covered segments [index, end) with one segment
+        int removed = end - index;
+        if (removed == 0) {
+            ensureCapacity(segmentCount + 1);
+            System.arraycopy(segmentX, index, segmentX, index + 1, segmentCount - index);
+            System.arraycopy(segmentY, index, segmentY, index + 1, segmentCount - index);
+            System.arraycopy(segmentWidth, index, segmentWidth, index + 1, segmentCount - index);
+            segmentCount++;
+        } else if (removed > 1) {
+            remove(index + 1, removed - 1);
+        }
+        segmentX[index] = x;
+        segmentY[index] = top;
+        segmentWidth[index] = w;
+        // merge with the neighbours at the same height
+        if (index + 1 < segmentCount && segmentY[index + 1] == top) {
+            segmentWidth[index] += segmentWidth[index + 1];
+            remove(index + 1, 1);
+        }
+        if (index > 0 && segmentY[index - 1] == top) {
+            segmentWidth[index - 1] += segmentWidth[index];
+            remove(index, 1);
+        }
+    }
+
+    private void remove(int from, int count) {
+        int moved = segmentCount - from - count;
+        System.arraycopy(segmentX, from + count, segmentX, from, moved);
+        System.arraycopy(segmentY, from + count, segmentY, from, moved);
+        System.arraycopy(segmentWidth, from + count, segmentWidth, from, moved);
+        segmentCount -= count;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > segmentX.length) {
+            int newLength = Math.max(capacity, segmentX.length << 1);
+            segmentX = Arrays.copyOf(segmentX, newLength);
+            segmentY = Arrays.copyOf(segmentY, newLength);
+            segmentWidth = Arrays.copyOf(segmentWidth, newLength);
+        }
+    }
+
+    /**
+     * Gets the height of the rows that are final, that is the smallest y position of the skyline.
+     * No block is placed above this height anymore.
+     *
+     * @return the settled height.
+     */
+    public int settledHeight() {
+        int min = segmentY[0];
+        for (int i = 1; i < segmentCount; i++) {
+            min = Math.min(min, segmentY[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public boolean incremental() {
+        return true;
+    }
+
+    /**
+     * Gets the width of the strip.
+     *
+     * @return the width.
+     */
+    @Override
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the strip, that is the bottom edge of the lowest block.
+     *
+     * @return the height.
+     */
+    @Override
+    public int height() {
+        return height;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking.cli;
+
+import org.overrun.binpacking.AutoPacker;
+import org.overrun.binpacking.FixedPacker;
+import org.overrun.binpacking.GrowingPacker;
+import org.overrun.binpacking.ManifestReader;
+import org.overrun.binpacking.MaxRectsPacker;
+import org.overrun.binpacking.PackedLayout;
+import org.overrun.binpacking.Packer;
+import org.overrun.binpacking.StripPacker;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The command line packer, which packs many manifests concurrently in one JVM.
+ * <p>
+ * Each manifest is read by {@link ManifestReader}, packed on a worker pool and written as a
+ * {@link PackedLayout} file named after the manifest with the extension {@code .layout}.
+ * <h2>Example</h2>
+ * <pre>
+ * {@code
+ * java -jar bin-packing.jar --jobs 8 --output build/atlas src/atlas/*.csv src/atlas/*.json
+ * }
+ * </pre>
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class Main {
+    private static final String USAGE = """
+        Usage: bin-packing [options] <manifest>...
+        Options:
+          --packer <growing|fixed|maxrects|strip|auto>  the packer (default: growing)
+          --width <n>                                    the width of the fixed, maxrects and strip packers
+          --height <n>                                   the height of the fixed and maxrects packers
+          --no-sort                                      pack in the order of the manifest
+          --jobs <n>                                     the count of workers (default: the count of processors)
+          --output <directory>                           the output directory (default: next to each manifest)
+        A manifest is either CSV with lines of id,width,height, or JSON (.json) with an array
+        of objects with id, width and height.""";
+    private String packer = "growing";
+    private int width = -1, height = -1;
+    private boolean sort = true;
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    private Path output;
+    private final List<Path> manifests = new ArrayList<>();
+
+    private Main() {
+    }
+
+    /**
+     * The entry point.
+     *
+     * @param args the arguments.
+     */
+    public static void main(String[] args) {
+        System.exit(run(System.out, System.err, args));
+    }
+
+    /**
+     * Runs the command line packer.
+     *
+     * @param out  the stream of the summary.
+     * @param err  the stream of the errors.
+     * @param args the arguments.
+     * @return the exit code: {@code 0} on success, {@code 1} if any manifest failed, {@code 2} on invalid arguments.
+     */
+    public static int run(PrintStream out, PrintStream err, String... args) {
+        var main = new Main();
+        try {
+            main.parse(args);
+            main.createPacker();
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        return main.packAll(out, err);
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            var arg = args[i];
+            switch (arg) {
+                case "--packer" -> packer = value(args, ++i, arg);
+                case "--width" -> width = intValue(args, ++i, arg);
+                case "--height" -> height = intValue(args, ++i, arg);
+                case "--no-sort" -> sort = false;
+                case "--jobs" -> jobs = intValue(args, ++i, arg);
+                case "--output" -> output = Path.of(value(args, ++i, arg));
+                default -> {
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    manifests.add(Path.of(arg));
+                }
+            }
+        }
+        if (manifests.isEmpty()) {
+            throw new IllegalArgumentException("No manifest");
+        }
+        if (jobs <= 0) {
+            throw new IllegalArgumentException("Invalid count of jobs: " + jobs);
+        }
+        var layoutFiles = new HashSet<Path>();
+        for (var manifest : manifests) {
+            if (!layoutFiles.add(layoutFile(manifest))) {
+                throw new IllegalArgumentException("Manifests with the same layout file: " + layoutFile(manifest));
+            }
+        }
+    }
+
+    private Path layoutFile(Path manifest) {
+        var name = manifest.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        var directory = output != null ? output : manifest.toAbsolutePath().getParent();
+        return directory.resolve((dot > 0 ? name.substring(0, dot) : name) + ".layout").toAbsolutePath().normalize();
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value of " + option);
+        }
+        return args[index];
+    }
+
+    private static int intValue(String[] args, int index, String option) {
+        try {
+            return Integer.parseInt(value(args, index, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of " + option + ": " + args[index]);
+        }
+    }
+
+    private Packer createPacker() {
+        return switch (packer) {
+            case "growing" -> new GrowingPacker();
+            case "fixed" -> new FixedPacker(requireSize(width, "--width"), requireSize(height, "--height"));
+            case "maxrects" -> new MaxRectsPacker(requireSize(width, "--width"), requireSize(height, "--height"));
+            case "strip" -> new StripPacker(requireSize(width, "--width"));
+            case "auto" -> new AutoPacker().sort(sort);
+            default -> throw new IllegalArgumentException("Unknown packer: " + packer);
+        };
+    }
+
+    private static int requireSize(int size, String option) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The packer requires " + option);
+        }
+        return size;
+    }
+
+    private int packAll(PrintStream out, PrintStream err) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, manifests.size()));
+        try {
+            var futures = new ArrayList<Future<String>>(manifests.size());
+            for (var manifest : manifests) {
+                futures.add(executor.submit(() -> pack(manifest)));
+            }
+            int failures = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    out.println(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    var cause = e.getCause();
+                    err.println(manifests.get(i) + ": " + (cause instanceof IOException ? cause.getMessage() : cause));
+                    failures++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    err.println("Interrupted");
+                    return 1;
+                }
+            }
+            return failures == 0 ? 0 : 1;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String pack(Path manifest) throws IOException {
+        var regions = ManifestReader.read(manifest);
+        if (sort) {
+            Packer.sort(regions);
+        }
+        var packer = createPacker();
+        packer.fit(regions);
+        PackedLayout layout;
+        try {
+            layout = PackedLayout.of(packer, regions);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        var layoutFile = layoutFile(manifest);
+        Files.createDirectories(layoutFile.getParent());
+        try (var out = new BufferedOutputStream(Files.newOutputStream(layoutFile))) {
+            layout.write(out);
+        }
+
+        int unfitted = 0;
+        for (int i = 0; i < layout.size(); i++) {
+            if (!layout.fitted(i)) unfitted++;
+        }
+        return manifest + ": " + layout.size() + " regions, " + layout.width() + "x" + layout.height() +
+               (unfitted > 0 ? ", " + unfitted + " not fitted" : "") + " -> " + layoutFile;
+    }
+}
@@ -41,6 +41,7 @@ import java.util.Optional;
 public final class DelegateRegion<T> implements PackerRegion<T> {
     private final PackerRegionSize size;
     private final T userdata;
+    private final @Nullable Object group;
     private @Nullable PackerFitPos fit;
 
     /**
@@ -50,8 +51,21 @@ public final class DelegateRegion<T> implements PackerRegion<T> {
      * @param userdata the userdata.
      */
     public DelegateRegion(PackerRegionSize size, @Nullable T userdata) {
+        this(size, userdata, null);
+    }
+
+    /**
+     * Creates the region with the given size and group.
+     *
+     * @param size     the size of the region.
+     * @param userdata the userdata.
+     * @param group    the group.
+     * @since 0.6.0
+     */
+    public DelegateRegion(PackerRegionSize size, @Nullable T userdata, @Nullable Object group) {
         this.size = size;
         this.userdata = userdata;
+        this.group = group;
     }
 
     @Override
@@ -79,6 +93,11 @@ public final class DelegateRegion<T> implements PackerRegion<T> {
         return userdata;
     }
 
+    @Override
+    public @Nullable Object group() {
+        return group;
+    }
+
     @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
     @Override
     public boolean equals(Object o) {
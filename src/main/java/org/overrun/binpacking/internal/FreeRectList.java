@@ -0,0 +1,307 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking.internal;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The list of the maximal free rectangles of a canvas, stored in primitive arrays.
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class FreeRectList {
+    private int[] xs = new int[16], ys = new int[16], ws = new int[16], hs = new int[16];
+    private int count;
+    private int[] newXs = new int[16], newYs = new int[16], newWs = new int[16], newHs = new int[16];
+    private int newCount;
+
+    /**
+     * Resets this list to a single free rectangle of the given size.
+     *
+     * @param width  the width.
+     * @param height the height.
+     */
+    public void reset(int width, int height) {
+        count = 0;
+        add(0, 0, width, height);
+    }
+
+    /**
+     * Gets the count of free rectangles.
+     *
+     * @return the count of free rectangles.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Gets the x position of the free rectangle at the given index.
+     *
+     * @param index the index.
+     * @return the x position.
+     */
+    public int x(int index) {
+        return xs[index];
+    }
+
+    /**
+     * Gets the y position of the free rectangle at the given index.
+     *
+     * @param index the index.
+     * @return the y position.
+     */
+    public int y(int index) {
+        return ys[index];
+    }
+
+    /**
+     * Finds the free rectangle that fits the given size with the shortest leftover side.
+     *
+     * @param w the width.
+     * @param h the height.
+     * @return the index of the free rectangle, or {@code -1} if none fits.
+     * @see RectScanner#findBestShortSideFit(int[], int[], int, int, int)
+     */
+    public int findBestFit(int w, int h) {
+        return RectScanner.findBestShortSideFit(ws, hs, count, w, h);
+    }
+
+    /**
+     * Marks the given rectangle as used, splitting the free rectangles that intersect it.
+     *
+     * @param px the x position.
+     * @param py the y position.
+     * @param pw the width.
+     * @param ph the height.
+     */
+    public void occupy(int px, int py, int pw, int ph) {
+        if (pw <= 0 || ph <= 0) return;
+        newCount = 0;
+        for (int i = 0; i < count; ) {
+            int fx = xs[i], fy = ys[i], fw = ws[i], fh = hs[i];
+            if (px >= fx + fw || px + pw <= fx || py >= fy + fh || py + ph <= fy) {
+                i++;
+                continue;
+            }
+            if (px > fx) addNew(fx, fy, px - fx, fh);
+            if (px + pw < fx + fw) addNew(px + pw, fy, fx + fw - (px + pw), fh);
+            if (py > fy) addNew(fx, fy, fw, py - fy);
+            if (py + ph < fy + fh) addNew(fx, py + ph, fw, fy + fh - (py + ph));
+            remove(i);
+        }
+        // the old rectangles do not contain each other, so only the new ones have to be checked
+        for (int n = 0; n < newCount; n++) {
+            int nx = newXs[n], ny = newYs[n], nw = newWs[n], nh = newHs[n];
+            boolean contained = false;
+            for (int i = 0; i < count; ) {
+                if (contains(xs[i], ys[i], ws[i], hs[i], nx, ny, nw, nh)) {
+                    contained = true;
+                    break;
+                }
+                if (contains(nx, ny, nw, nh, xs[i], ys[i], ws[i], hs[i])) {
+                    remove(i);
+                } else {
+                    i++;
+                }
+            }
+            if (!contained) {
+                add(nx, ny, nw, nh);
+            }
+        }
+    }
+
+    /**
+     * A consumer of rectangles.
+     */
+    @FunctionalInterface
+    public interface RectConsumer {
+        /**
+         * Accepts the given rectangle.
+         *
+         * @param x the x position.
+         * @param y the y position.
+         * @param w the width.
+         * @param h the height.
+         */
+        void accept(int x, int y, int w, int h);
+    }
+
+    /**
+     * Marks the given rectangle as free, and derives the maximal free rectangles again.
+     * <p>
+     * The new maximal rectangles all intersect the released one, and are covered by it and the old
+     * free rectangles touching it. They are cut from the bounds of those by the used rectangles,
+     * keeping only the pieces that intersect the released one.
+     * This takes time linear in the count of used rectangles.
+     *
+     * @param x    the x position.
+     * @param y    the y position.
+     * @param w    the width.
+     * @param h    the height.
+     * @param used the action that passes each used rectangle, not including the released one, to the given consumer.
+     */
+    public void release(int x, int y, int w, int h, Consumer<RectConsumer> used) {
+        if (w <= 0 || h <= 0) return;
+        // a new maximal rectangle is covered by the released one and the old ones touching it
+        int minX = x, minY = y, maxX = x + w, maxY = y + h;
+        for (int i = 0; i < count; i++) {
+            if (intersects(xs[i], ys[i], ws[i], hs[i], x - 1, y - 1, w + 2, h + 2)) {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i] + ws[i]);
+                maxY = Math.max(maxY, ys[i] + hs[i]);
+            }
+        }
+        int bx = minX, by = minY, bw = maxX - minX, bh = maxY - minY;
+        newCount = 0;
+        addNew(bx, by, bw, bh);
+        used.accept((ux, uy, uw, uh) -> {
+            if (intersects(ux, uy, uw, uh, bx, by, bw, bh)) {
+                cut(ux, uy, uw, uh, x, y, w, h);
+            }
+        });
+        // the old rectangles that are not maximal any more are contained in the new ones
+        for (int i = 0; i < count; ) {
+            boolean contained = false;
+            for (int n = 0; n < newCount; n++) {
+                if (contains(newXs[n], newYs[n], newWs[n], newHs[n], xs[i], ys[i], ws[i], hs[i])) {
+                    contained = true;
+                    break;
+                }
+            }
+            if (contained) {
+                remove(i);
+            } else {
+                i++;
+            }
+        }
+        for (int n = 0; n < newCount; n++) {
+            add(newXs[n], newYs[n], newWs[n], newHs[n]);
+        }
+    }
+
+    private void cut(int ux, int uy, int uw, int uh, int rx, int ry, int rw, int rh) {
+        if (uw <= 0 || uh <= 0) return;
+        int end = newCount;
+        boolean split = false;
+        for (int i = 0; i < end; ) {
+            int fx = newXs[i], fy = newYs[i], fw = newWs[i], fh = newHs[i];
+            if (!intersects(ux, uy, uw, uh, fx, fy, fw, fh)) {
+                i++;
+                continue;
+            }
+            if (ux > fx) addPiece(fx, fy, ux - fx, fh, rx, ry, rw, rh);
+            if (ux + uw < fx + fw) addPiece(ux + uw, fy, fx + fw - (ux + uw), fh, rx, ry, rw, rh);
+            if (uy > fy) addPiece(fx, fy, fw, uy - fy, rx, ry, rw, rh);
+            if (uy + uh < fy + fh) addPiece(fx, uy + uh, fw, fy + fh - (uy + uh), rx, ry, rw, rh);
+            // the pieces do not intersect the used rectangle, so they are skipped when moved here
+            if (removeNew(i) < end) {
+                end--;
+            }
+            split = true;
+        }
+        if (!split) return;
+        for (int n = 0; n < newCount; ) {
+            int nx = newXs[n], ny = newYs[n], nw = newWs[n], nh = newHs[n];
+            boolean contained = false;
+            for (int i = 0; i < newCount; i++) {
+                if (i != n && contains(newXs[i], newYs[i], newWs[i], newHs[i], nx, ny, nw, nh)) {
+                    contained = true;
+                    break;
+                }
+            }
+            if (contained) {
+                removeNew(n);
+            } else {
+                n++;
+            }
+        }
+    }
+
+    private void addPiece(int x, int y, int w, int h, int rx, int ry, int rw, int rh) {
+        // only the candidates intersecting the released rectangle can become maximal
+        if (intersects(x, y, w, h, rx, ry, rw, rh)) {
+            addNew(x, y, w, h);
+        }
+    }
+
+    private static boolean intersects(int ax, int ay, int aw, int ah, int bx, int by, int bw, int bh) {
+        return ax < bx + bw && bx < ax + aw && ay < by + bh && by < ay + ah;
+    }
+
+    private static boolean contains(int ax, int ay, int aw, int ah, int bx, int by, int bw, int bh) {
+        return bx >= ax && by >= ay && bx + bw <= ax + aw && by + bh <= ay + ah;
+    }
+
+    private void add(int x, int y, int w, int h) {
+        if (count == xs.length) {
+            int length = count << 1;
+            xs = Arrays.copyOf(xs, length);
+            ys = Arrays.copyOf(ys, length);
+            ws = Arrays.copyOf(ws, length);
+            hs = Arrays.copyOf(hs, length);
+        }
+        xs[count] = x;
+        ys[count] = y;
+        ws[count] = w;
+        hs[count] = h;
+        count++;
+    }
+
+    private void remove(int index) {
+        count--;
+        xs[index] = xs[count];
+        ys[index] = ys[count];
+        ws[index] = ws[count];
+        hs[index] = hs[count];
+    }
+
+    private int removeNew(int index) {
+        newCount--;
+        newXs[index] = newXs[newCount];
+        newYs[index] = newYs[newCount];
+        newWs[index] = newWs[newCount];
+        newHs[index] = newHs[newCount];
+        return newCount;
+    }
+
+    private void addNew(int x, int y, int w, int h) {
+        if (newCount == newXs.length) {
+            int length = newCount << 1;
+            newXs = Arrays.copyOf(newXs, length);
+            newYs = Arrays.copyOf(newYs, length);
+            newWs = Arrays.copyOf(newWs, length);
+            newHs = Arrays.copyOf(newHs, length);
+        }
+        newXs[newCount] = x;
+        newYs[newCount] = y;
+        newWs[newCount] = w;
+        newHs[newCount] = h;
+        newCount++;
+    }
+}
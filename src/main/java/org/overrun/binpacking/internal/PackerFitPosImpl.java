@@ -29,10 +29,20 @@ import org.overrun.binpacking.PackerFitPos;
 /**
  * The default implementation of {@link PackerFitPos}.
  *
- * @param x the x position.
- * @param y the y position.
+ * @param x       the x position.
+ * @param y       the y position.
+ * @param rotated {@code true} if the region is rotated.
  * @author squid233
  * @since 0.1.0
  */
-public record PackerFitPosImpl(int x, int y) implements PackerFitPos {
+public record PackerFitPosImpl(int x, int y, boolean rotated) implements PackerFitPos {
+    /**
+     * Creates the fit position of a region that is not rotated.
+     *
+     * @param x the x position.
+     * @param y the y position.
+     */
+    public PackerFitPosImpl(int x, int y) {
+        this(x, y, false);
+    }
 }
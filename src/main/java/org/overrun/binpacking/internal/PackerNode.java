@@ -37,7 +37,8 @@ import java.util.StringJoiner;
  */
 public final class PackerNode implements PackerFitPos {
     private int x, y, width, height;
-    private PackerNode right, down;
+    private int freeWidth, freeHeight;
+    private PackerNode parent, right, down;
     private boolean used;
 
     /**
@@ -92,6 +93,7 @@ public final class PackerNode implements PackerFitPos {
      */
     public PackerNode setRight(PackerNode right) {
         this.right = right;
+        if (right != null) right.parent = this;
         return this;
     }
 
@@ -103,6 +105,7 @@ public final class PackerNode implements PackerFitPos {
      */
     public PackerNode setDown(PackerNode down) {
         this.down = down;
+        if (down != null) down.parent = this;
         return this;
     }
 
@@ -144,6 +147,39 @@ public final class PackerNode implements PackerFitPos {
         return height;
     }
 
+    /**
+     * Gets the maximum width of the free nodes with a non-zero area in this subtree.
+     * <p>
+     * A non-empty region wider than this value cannot fit in any node of this subtree.
+     *
+     * @return the maximum free width, or {@code -1} if no node is free.
+     */
+    public int freeWidth() {
+        if (used) return freeWidth;
+        return width > 0 && height > 0 ? width : -1;
+    }
+
+    /**
+     * Gets the maximum height of the free nodes with a non-zero area in this subtree.
+     * <p>
+     * A non-empty region taller than this value cannot fit in any node of this subtree.
+     *
+     * @return the maximum free height, or {@code -1} if no node is free.
+     */
+    public int freeHeight() {
+        if (used) return freeHeight;
+        return width > 0 && height > 0 ? height : -1;
+    }
+
+    /**
+     * Gets the parent node of this node.
+     *
+     * @return the parent node, or {@code null} if this is the root node.
+     */
+    public PackerNode parent() {
+        return parent;
+    }
+
     /**
      * Gets the right node of this node.
      *
@@ -172,6 +208,19 @@ public final class PackerNode implements PackerFitPos {
         return this;
     }
 
+    /**
+     * Marks this node as free and removes its children, reverting a split.
+     * The {@link #updateFreeSize() free size} of the parent must be updated afterward.
+     *
+     * @return this.
+     */
+    public PackerNode markFree() {
+        used = false;
+        right = null;
+        down = null;
+        return this;
+    }
+
     /**
      * Returns {@code true} if this node is used, e.g. split or grew.
      *
@@ -181,6 +230,35 @@ public final class PackerNode implements PackerFitPos {
         return used;
     }
 
+    /**
+     * Recomputes the {@link #freeWidth() free size} of this node from its children,
+     * then propagates the change to the ancestors until one of them is unaffected.
+     * <p>
+     * This must be called after this node was split or its children were replaced.
+     *
+     * @return this.
+     */
+    public PackerNode updateFreeSize() {
+        for (PackerNode node = this; node != null && node.used; node = node.parent) {
+            int fw = Math.max(freeWidth(node.right), freeWidth(node.down));
+            int fh = Math.max(freeHeight(node.right), freeHeight(node.down));
+            if (node != this && fw == node.freeWidth && fh == node.freeHeight) {
+                break;
+            }
+            node.freeWidth = fw;
+            node.freeHeight = fh;
+        }
+        return this;
+    }
+
+    private static int freeWidth(PackerNode node) {
+        return node != null ? node.freeWidth() : -1;
+    }
+
+    private static int freeHeight(PackerNode node) {
+        return node != null ? node.freeHeight() : -1;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
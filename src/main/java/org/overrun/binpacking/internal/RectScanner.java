@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking.internal;
+
+/**
+ * Scans arrays of free rectangle sizes for the best fit of a region.
+ * <p>
+ * The scan uses the incubating Vector API if the module {@code jdk.incubator.vector} is resolved,
+ * for example with {@code --add-modules jdk.incubator.vector}, and a scalar loop otherwise.
+ * The module does not require {@code jdk.incubator.vector}: the vector scan is compiled in
+ * a separate source set and loaded reflectively.
+ * The vector path can be disabled with the system property
+ * {@code overrun.binpacking.disableVector=true}.
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class RectScanner {
+    private static final Scan VECTOR = loadVector();
+
+    private RectScanner() {
+        //no instance
+    }
+
+    /**
+     * A scan for the best fit.
+     */
+    interface Scan {
+        /**
+         * Finds the free rectangle that fits the given size with the shortest leftover side.
+         *
+         * @param widths  the widths of the free rectangles.
+         * @param heights the heights of the free rectangles.
+         * @param count   the count of free rectangles.
+         * @param w       the width of the region.
+         * @param h       the height of the region.
+         * @return the index of the free rectangle, or {@code -1} if none fits.
+         */
+        int findBestShortSideFit(int[] widths, int[] heights, int count, int w, int h);
+    }
+
+    /**
+     * Loads the Vector API scan, which is compiled separately and not required by the module.
+     *
+     * @return the scan, or {@code null} if the Vector API is not available.
+     */
+    private static Scan loadVector() {
+        if (Boolean.getBoolean("overrun.binpacking.disableVector")) {
+            return null;
+        }
+        var vector = ModuleLayer.boot().findModule("jdk.incubator.vector");
+        if (vector.isEmpty()) {
+            return null;
+        }
+        RectScanner.class.getModule().addReads(vector.get());
+        try {
+            return (Scan) Class.forName("org.overrun.binpacking.internal.VectorRectScanner")
+                .getDeclaredConstructor()
+                .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // the vector scan is not packaged
+            return null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the scan uses the Vector API.
+     *
+     * @return {@code true} if the scan uses the Vector API.
+     */
+    public static boolean isVectorized() {
+        return VECTOR != null;
+    }
+
+    /**
+     * Finds the free rectangle that fits the given size with the shortest leftover side.
+     * Ties are broken by the lowest index.
+     *
+     * @param widths  the widths of the free rectangles.
+     * @param heights the heights of the free rectangles.
+     * @param count   the count of free rectangles.
+     * @param w       the width of the region.
+     * @param h       the height of the region.
+     * @return the index of the free rectangle, or {@code -1} if none fits.
+     */
+    public static int findBestShortSideFit(int[] widths, int[] heights, int count, int w, int h) {
+        if (VECTOR != null) {
+            return VECTOR.findBestShortSideFit(widths, heights, count, w, h);
+        }
+        return findBestShortSideFitScalar(widths, heights, count, w, h, 0);
+    }
+
+    /**
+     * The scalar implementation of {@link #findBestShortSideFit(int[], int[], int, int, int)},
+     * starting at the given index. The tests compare it with the vector scan.
+     *
+     * @param widths  the widths of the free rectangles.
+     * @param heights the heights of the free rectangles.
+     * @param count   the count of free rectangles.
+     * @param w       the width of the region.
+     * @param h       the height of the region.
+     * @param from    the index of the first free rectangle to scan.
+     * @return the index of the free rectangle, or {@code -1} if none fits.
+     */
+    public static int findBestShortSideFitScalar(int[] widths, int[] heights, int count, int w, int h, int from) {
+        int best = -1;
+        int bestScore = Integer.MAX_VALUE;
+        for (int i = from; i < count; i++) {
+            int dw = widths[i] - w;
+            int dh = heights[i] - h;
+            if (dw >= 0 && dh >= 0) {
+                int score = Math.min(dw, dh);
+                if (score < bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,758 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking.test;
+
+import org.overrun.binpacking.AnnealingPacker;
+import org.overrun.binpacking.AtlasCache;
+import org.overrun.binpacking.AutoPacker;
+import org.overrun.binpacking.BestOfPacker;
+import org.overrun.binpacking.BuddyPacker;
+import org.overrun.binpacking.Compaction;
+import org.overrun.binpacking.Deadline;
+import org.overrun.binpacking.DedupPacker;
+import org.overrun.binpacking.ExactPacker;
+import org.overrun.binpacking.FixedPacker;
+import org.overrun.binpacking.GroupedPacker;
+import org.overrun.binpacking.GrowingPacker;
+import org.overrun.binpacking.LayoutPublisher;
+import org.overrun.binpacking.LayoutValidator;
+import org.overrun.binpacking.LongGrowingPacker;
+import org.overrun.binpacking.LongRegions;
+import org.overrun.binpacking.MaxRectsPacker;
+import org.overrun.binpacking.PackedLayout;
+import org.overrun.binpacking.Packer;
+import org.overrun.binpacking.PackerFitPos;
+import org.overrun.binpacking.PackerRegion;
+import org.overrun.binpacking.ShardedPacker;
+import org.overrun.binpacking.StripPacker;
+import org.overrun.binpacking.internal.RectScanner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * randomized stress test of all packers against the layout validator
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+public final class PackerStressTest {
+    private static final long SEED = 0x5EEDL;
+
+    private static List<PackerRegion<?>> generateRandom(Random random, int count, int maxSide) {
+        var regions = new ArrayList<PackerRegion<?>>(count);
+        for (int i = 0; i < count; i++) {
+            regions.add(PackerRegion.delegate(PackerRegion.sized(1 + random.nextInt(maxSide), 1 + random.nextInt(maxSide)), i));
+        }
+        return Packer.sort(regions);
+    }
+
+    private static List<PackerRegion<?>> generateRuns(Random random, int count) {
+        var regions = new ArrayList<PackerRegion<?>>(count);
+        while (regions.size() < count) {
+            int w = 1 + random.nextInt(32);
+            int h = 1 + random.nextInt(32);
+            for (int i = 0, run = 1 + random.nextInt(2000); i < run && regions.size() < count; i++) {
+                regions.add(PackerRegion.delegate(PackerRegion.sized(w, h), regions.size() % 97));
+            }
+        }
+        return Packer.sort(regions);
+    }
+
+    private static void check(String name, Packer packer, List<? extends PackerRegion<?>> regions) {
+        check(name, packer, regions, false);
+    }
+
+    /**
+     * @param extent whether the packer sizes the atlas to the regions, rather than having a fixed canvas.
+     */
+    private static void check(String name, Packer packer, List<? extends PackerRegion<?>> regions, boolean extent) {
+        long time = System.nanoTime();
+        packer.fit(regions);
+        long packed = System.nanoTime();
+        var problem = extent ? LayoutValidator.validateExtent(packer, regions) : LayoutValidator.validate(packer, regions);
+        long validated = System.nanoTime();
+        if (problem.isPresent()) {
+            throw new AssertionError(name + " (seed " + SEED + "): " + problem.get());
+        }
+        System.out.printf("%-32s %8d regions, %dx%d, packed in %d ms, validated in %d ms%n",
+            name, regions.size(), packer.width(), packer.height(),
+            (packed - time) / 1_000_000, (validated - packed) / 1_000_000);
+    }
+
+    private static void checkAll(String input, Supplier<List<PackerRegion<?>>> generator) {
+        check(input + " FixedPacker", new FixedPacker(4096, 4096), generator.get());
+        check(input + " GrowingPacker", new GrowingPacker(), generator.get(), true);
+        check(input + " MaxRectsPacker", new MaxRectsPacker(4096, 4096), generator.get());
+        check(input + " BestOfPacker", new BestOfPacker(GrowingPacker::new), generator.get(), true);
+        // a bounded canvas leaves regions unfitted, which must not keep the fits of an earlier order
+        check(input + " BestOfPacker fixed", new BestOfPacker(() -> new FixedPacker(1024, 1024)), generator.get());
+        check(input + " StripPacker", new StripPacker(4096), generator.get());
+        check(input + " ShardedPacker", new ShardedPacker().shards(8), generator.get(), true);
+        check(input + " ShardedPacker fixed", new ShardedPacker((w, h) -> new FixedPacker(w, h), GrowingPacker::new).shards(8), generator.get(), true);
+        check(input + " AutoPacker", new AutoPacker(), generator.get(), true);
+
+        var regions = generator.get();
+        var packer = new DedupPacker(new GrowingPacker());
+        packer.fit(regions);
+        // the duplicates share the positions of their representatives
+        var seen = new HashSet<Object>();
+        var unique = regions.stream()
+            .filter(r -> seen.add(List.of(r.width(), r.height(), r.userdata())))
+            .toList();
+        var problem = LayoutValidator.validateExtent(packer, unique);
+        if (problem.isPresent()) {
+            throw new AssertionError(input + " DedupPacker (seed " + SEED + "): " + problem.get());
+        }
+    }
+
+    private static void checkValidator() {
+        // a valid 1000x1000 grid, then the same grid with one overlap
+        var regions = new ArrayList<PackerRegion<?>>(1_000_000);
+        for (int y = 0; y < 1000; y++) {
+            for (int x = 0; x < 1000; x++) {
+                var region = PackerRegion.sized(2, 3);
+                region.setFit(PackerFitPos.of(x * 2, y * 3));
+                regions.add(region);
+            }
+        }
+        long time = System.nanoTime();
+        if (LayoutValidator.validate(2000, 3000, regions).isPresent()) {
+            throw new AssertionError("valid layout reported invalid");
+        }
+        System.out.println("validated 1000000 placements in " + (System.nanoTime() - time) / 1_000_000 + " ms");
+        regions.get(500_500).setFit(PackerFitPos.of(1001, 1501));
+        if (LayoutValidator.validate(2000, 3000, regions).isEmpty()) {
+            throw new AssertionError("overlap not reported");
+        }
+        regions.get(500_500).setFit(PackerFitPos.of(1999, 0));
+        if (LayoutValidator.validate(2000, 3000, regions).isEmpty()) {
+            throw new AssertionError("out of bounds not reported");
+        }
+
+        // a packer that reports more than the extent of its regions
+        var small = List.of(PackerRegion.sized(4, 4), PackerRegion.sized(4, 4));
+        var packer = new GrowingPacker();
+        packer.fit(small);
+        if (LayoutValidator.validateExtent(packer, small).isPresent()) {
+            throw new AssertionError("extent of GrowingPacker reported invalid");
+        }
+        var fixed = new FixedPacker(16, 16);
+        fixed.fit(small);
+        if (LayoutValidator.validate(fixed, small).isPresent() || LayoutValidator.validateExtent(fixed, small).isEmpty()) {
+            throw new AssertionError("over-reported size not reported");
+        }
+    }
+
+    /**
+     * Checks that the free rectangle scan uses the Vector API exactly when it is resolved and not disabled,
+     * and that it finds the same rectangles as the scalar loop.
+     */
+    static void checkScanner() {
+        boolean expected = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() &&
+                           !Boolean.getBoolean("overrun.binpacking.disableVector");
+        if (RectScanner.isVectorized() != expected) {
+            throw new AssertionError("RectScanner.isVectorized() = " + RectScanner.isVectorized() + ", expected " + expected);
+        }
+        var random = new Random(SEED);
+        for (int n = 0; n < 200_000; n++) {
+            // small sides give many ties, which must go to the lowest index
+            int count = random.nextInt(100);
+            int range = random.nextBoolean() ? 64 : 1 << 20;
+            int[] widths = new int[count + random.nextInt(8)];
+            int[] heights = new int[widths.length];
+            for (int i = 0; i < widths.length; i++) {
+                widths[i] = random.nextInt(range);
+                heights[i] = random.nextInt(range);
+            }
+            int w = 1 + random.nextInt(range), h = 1 + random.nextInt(range);
+            int actual = RectScanner.findBestShortSideFit(widths, heights, count, w, h);
+            int scalar = RectScanner.findBestShortSideFitScalar(widths, heights, count, w, h, 0);
+            if (actual != scalar) {
+                throw new AssertionError("RectScanner found " + actual + " for " + w + "x" + h + " in " + count +
+                                         " rectangles, the scalar loop " + scalar);
+            }
+        }
+        System.out.println("scanned free rectangles, vectorized: " + RectScanner.isVectorized());
+    }
+
+    private static void checkCompaction() {
+        var random = new Random(SEED);
+        var regions = generateRandom(random, 20_000, 32);
+        var packer = new FixedPacker(2048, 2048);
+        packer.fit(regions);
+        // free about 60% of the regions to fragment the atlas
+        var live = regions.stream()
+            .filter(r -> r.fit().isPresent() && random.nextInt(10) < 4)
+            .toList();
+        var compaction = new Compaction(packer.width(), packer.height(), live);
+        int steps = 0;
+        long time = System.nanoTime();
+        while (!compaction.step(Deadline.after(Duration.ofMillis(1)))) {
+            steps++;
+        }
+        time = System.nanoTime() - time;
+        compaction.apply();
+        var problem = LayoutValidator.validate(compaction.width(), compaction.height(), live);
+        if (problem.isPresent()) {
+            throw new AssertionError("Compaction (seed " + SEED + "): " + problem.get());
+        }
+        System.out.printf("compacted %d regions from %dx%d to %dx%d with %d moves (%d pixels) in %d steps, %d ms%n",
+            live.size(), packer.width(), packer.height(), compaction.width(), compaction.height(),
+            compaction.moves().size(), compaction.movedPixels(), steps + 1, time / 1_000_000);
+    }
+
+    private static void checkCache() {
+        var random = new Random(SEED);
+        var live = new HashMap<Integer, PackerRegion<?>>();
+        var cache = new AtlasCache<Integer>(512, 512, (key, fit) -> {
+            if (live.remove(key) == null) {
+                throw new AssertionError("AtlasCache evicted an absent key " + key);
+            }
+        });
+        int evictions = 0;
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5000);
+            // the size depends on the key, so that a key is never reallocated
+            int w = 1 + (key * 31 % 48), h = 1 + (key * 17 % 48);
+            if (!cache.contains(key)) {
+                int before = live.size();
+                var region = PackerRegion.sized(w, h);
+                region.setFit(cache.getOrAllocate(key, w, h));
+                evictions += before - live.size();
+                live.put(key, region);
+            } else if (!cache.get(key).equals(live.get(key).fit())) {
+                throw new AssertionError("AtlasCache moved key " + key);
+            }
+            if (i % 10_000 == 0) {
+                var problem = LayoutValidator.validate(cache.width(), cache.height(), List.copyOf(live.values()));
+                if (problem.isPresent()) {
+                    throw new AssertionError("AtlasCache (seed " + SEED + "): " + problem.get());
+                }
+            }
+        }
+        System.out.println("cached " + cache.size() + " entries with " + evictions + " evictions");
+
+        // the released space is merged across entries that do not share a whole edge
+        var evicted = new ArrayList<String>();
+        var small = new AtlasCache<String>(4, 2, (key, fit) -> evicted.add(key));
+        small.getOrAllocate("a", 2, 2);
+        small.getOrAllocate("b", 2, 1);
+        small.getOrAllocate("c", 2, 1);
+        small.evict("a");
+        small.evict("b");
+        evicted.clear();
+        small.getOrAllocate("d", 4, 1);
+        if (!evicted.isEmpty()) {
+            throw new AssertionError("AtlasCache evicted " + evicted + " with enough contiguous space free");
+        }
+    }
+
+    private static void checkLayoutQueries() {
+        var random = new Random(SEED);
+        var packer = new MaxRectsPacker(1024, 1024);
+        var regions = generateRandom(random, 5000, 48);
+        packer.fit(regions);
+        var layout = PackedLayout.of(packer, regions, userdata -> null);
+        for (int q = 0; q < 20_000; q++) {
+            int x = random.nextInt(1100) - 40, y = random.nextInt(1100) - 40;
+            int w = random.nextInt(80), h = random.nextInt(80);
+            int expected = -1;
+            var expectedSet = new BitSet();
+            for (int i = 0; i < layout.size(); i++) {
+                if (!layout.fitted(i)) continue;
+                int ix = layout.x(i), iy = layout.y(i), iw = layout.occupiedWidth(i), ih = layout.occupiedHeight(i);
+                if (x >= ix && y >= iy && x < ix + iw && y < iy + ih) expected = i;
+                if (w > 0 && h > 0 && ix < x + w && iy < y + h && ix + iw > x && iy + ih > y) expectedSet.set(i);
+            }
+            if (layout.indexAt(x, y) != expected) {
+                throw new AssertionError("PackedLayout.indexAt(" + x + ", " + y + ") = " + layout.indexAt(x, y) + ", expected " + expected);
+            }
+            var actual = layout.indicesIntersecting(x, y, w, h);
+            var actualSet = new BitSet();
+            for (int i : actual) actualSet.set(i);
+            if (actual.length != actualSet.cardinality() || !actualSet.equals(expectedSet)) {
+                throw new AssertionError("PackedLayout.indicesIntersecting(" + x + ", " + y + ", " + w + ", " + h + ") = " + actualSet + ", expected " + expectedSet);
+            }
+        }
+        System.out.println("queried a layout of " + layout.size() + " regions");
+
+        // a corrupt layout file is rejected before the grid index is built
+        int[][] corrupt = {{-1, 0, 4, 4}, {0, 0, 4, -4}, {61, 0, 4, 4}, {0, Integer.MAX_VALUE, 4, 4}};
+        for (var bounds : corrupt) {
+            var bytes = new ByteArrayOutputStream();
+            try (var out = new DataOutputStream(bytes)) {
+                out.writeInt(0x42504C59);
+                out.writeShort(1);
+                out.writeInt(64);
+                out.writeInt(64);
+                out.writeInt(1);
+                out.writeUTF("a");
+                out.writeByte(1);
+                for (int value : bounds) out.writeInt(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try {
+                PackedLayout.read(new ByteArrayInputStream(bytes.toByteArray()));
+                throw new AssertionError("PackedLayout.read accepted the bounds " + Arrays.toString(bounds));
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    private static void checkLong() {
+        var random = new Random(SEED);
+        var regions = new LongRegions();
+        for (int i = 0; i < 2000; i++) {
+            regions.add(1L + random.nextInt(1 << 20) * 4096L, 1L + random.nextInt(1 << 10));
+        }
+        var packer = new LongGrowingPacker();
+        packer.fit(regions, regions.sortedOrder());
+        for (int i = 0; i < regions.size(); i++) {
+            if (!regions.fitted(i)) {
+                throw new AssertionError("LongGrowingPacker did not fit region " + i);
+            }
+            long x = regions.x(i), y = regions.y(i), w = regions.width(i), h = regions.height(i);
+            if (x < 0 || y < 0 || x + w > packer.width() || y + h > packer.height()) {
+                throw new AssertionError("LongGrowingPacker placed region " + i + " out of bounds");
+            }
+            for (int j = 0; j < i; j++) {
+                if (x < regions.x(j) + regions.width(j) && regions.x(i) + w > regions.x(j) &&
+                    y < regions.y(j) + regions.height(j) && y + h > regions.y(j)) {
+                    throw new AssertionError("LongGrowingPacker overlapped regions " + j + " and " + i);
+                }
+            }
+        }
+        System.out.println("long packed " + regions.size() + " regions, " + packer.width() + "x" + packer.height());
+
+        // with int sizes, the long packer grows and places grid blocks like GrowingPacker
+        for (var ints : List.of(generateRuns(new Random(SEED), 200_000), generateRandom(new Random(SEED), 50_000, 64))) {
+            var longs = new LongRegions(ints.size());
+            ints.forEach(r -> longs.add(r.width(), r.height()));
+            var growing = new GrowingPacker();
+            growing.fit(ints);
+            packer.fit(longs);
+            if (packer.width() != growing.width() || packer.height() != growing.height()) {
+                throw new AssertionError("LongGrowingPacker packed " + packer.width() + "x" + packer.height() +
+                                         ", GrowingPacker " + growing.width() + "x" + growing.height());
+            }
+            for (int i = 0; i < ints.size(); i++) {
+                var fit = ints.get(i).fit().orElseThrow();
+                if (!longs.fitted(i) || longs.x(i) != fit.x() || longs.y(i) != fit.y()) {
+                    throw new AssertionError("LongGrowingPacker placed region " + i + " unlike GrowingPacker");
+                }
+            }
+        }
+
+        // each region grows the canvas, which must reuse the nodes of the replaced root and links
+        int growths = 200_000;
+        var tall = new LongRegions(growths);
+        for (int i = 0; i < growths; i++) {
+            tall.add(1, growths - i);
+        }
+        packer.fit(tall);
+        if (packer.nodeCount() > 3 * growths + 64) {
+            throw new AssertionError("LongGrowingPacker allocated " + packer.nodeCount() + " nodes for " + growths + " growths");
+        }
+        for (int i = 0; i < growths; i++) {
+            if (!tall.fitted(i)) {
+                throw new AssertionError("LongGrowingPacker did not fit the growing region " + i);
+            }
+        }
+
+        // the int packer must reject a growth beyond Integer.MAX_VALUE instead of overflowing
+        List<PackerRegion<?>> huge = List.of(
+            PackerRegion.sized(1 << 30, 1 << 30),
+            PackerRegion.sized(1 << 30, 1 << 30),
+            PackerRegion.sized(1 << 30, 1 << 30),
+            PackerRegion.sized(1 << 30, 1 << 30),
+            PackerRegion.sized(1 << 30, 1 << 30));
+        var growing = new GrowingPacker();
+        growing.fit(huge);
+        if (huge.get(4).fit().isPresent() || growing.width() < 0 || growing.height() < 0) {
+            throw new AssertionError("GrowingPacker overflowed to " + growing.width() + "x" + growing.height());
+        }
+        var problem = LayoutValidator.validate(growing, huge);
+        if (problem.isPresent()) {
+            throw new AssertionError("GrowingPacker (huge): " + problem.get());
+        }
+    }
+
+    private static void checkPublisher() {
+        var publisher = new LayoutPublisher(new FixedPacker(2048, 2048), userdata -> (String) userdata);
+        int batches = 200, batchSize = 50;
+        var writer = new Thread(() -> {
+            var random = new Random(SEED);
+            for (int b = 0; b < batches; b++) {
+                var batch = new ArrayList<PackerRegion<String>>(batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    batch.add(PackerRegion.delegate(PackerRegion.sized(1 + random.nextInt(16), 1 + random.nextInt(16)), b + ":" + i));
+                }
+                publisher.fit(batch);
+            }
+        });
+        writer.start();
+        long lastVersion = -1;
+        int reads = 0;
+        while (lastVersion < batches) {
+            var snapshot = publisher.snapshot();
+            var layout = snapshot.layout();
+            if (snapshot.version() < lastVersion || layout.size() != snapshot.version() * batchSize) {
+                throw new AssertionError("LayoutPublisher published version " + snapshot.version() + " with " + layout.size() + " regions after " + lastVersion);
+            }
+            if (snapshot.version() != lastVersion) {
+                var regions = new ArrayList<PackerRegion<?>>(layout.size());
+                for (int i = 0; i < layout.size(); i++) {
+                    var region = PackerRegion.sized(layout.regionWidth(i), layout.regionHeight(i));
+                    region.setFit(layout.fit(i).orElse(null));
+                    regions.add(region);
+                }
+                var problem = LayoutValidator.validate(layout.width(), layout.height(), regions);
+                if (problem.isPresent()) {
+                    throw new AssertionError("LayoutPublisher version " + snapshot.version() + ": " + problem.get());
+                }
+                lastVersion = snapshot.version();
+            }
+            reads++;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        System.out.println("read " + reads + " snapshots up to version " + lastVersion);
+
+        // the other incremental packers are only fitted with each batch, so the regions never move
+        for (Packer packer : List.of(new StripPacker(64), new BuddyPacker(64, 16))) {
+            var incremental = new LayoutPublisher(packer, userdata -> (String) userdata);
+            PackerFitPos first = null;
+            for (int b = 0; b < 4; b++) {
+                var batch = new ArrayList<PackerRegion<String>>();
+                for (int i = 0; i < 4; i++) {
+                    batch.add(PackerRegion.delegate(PackerRegion.sized(16, 16), b + ":" + i));
+                }
+                var layout = incremental.fit(batch).layout();
+                if (first == null) first = layout.fit(0).orElseThrow();
+                if (!layout.fit(0).orElseThrow().equals(first) || layout.height() > 64) {
+                    throw new AssertionError("LayoutPublisher refitted " + packer.getClass().getSimpleName() + ": region 0 at " + layout.fit(0) + ", height " + layout.height());
+                }
+                for (int i = 0; i < layout.size(); i++) {
+                    if (!layout.fitted(i)) {
+                        throw new AssertionError("LayoutPublisher did not fit region " + i + " with " + packer.getClass().getSimpleName());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkBuddy() {
+        var random = new Random(SEED);
+        var packer = new BuddyPacker(1024, 4);
+        var live = new ArrayList<PackerRegion<?>>();
+        int allocations = 0;
+        for (int i = 0; i < 200_000; i++) {
+            if (live.isEmpty() || random.nextInt(100) < 55) {
+                var region = PackerRegion.sized(1 + random.nextInt(64 >> random.nextInt(5)), 1 + random.nextInt(64 >> random.nextInt(5)));
+                packer.fit(List.of(region));
+                if (region.fit().isPresent()) {
+                    live.add(region);
+                    allocations++;
+                }
+            } else {
+                int index = random.nextInt(live.size());
+                packer.release(live.get(index));
+                live.set(index, live.get(live.size() - 1));
+                live.remove(live.size() - 1);
+            }
+            if (i % 10_000 == 0) {
+                var problem = LayoutValidator.validate(packer, live);
+                if (problem.isPresent()) {
+                    throw new AssertionError("BuddyPacker (seed " + SEED + "): " + problem.get());
+                }
+            }
+        }
+        live.forEach(packer::release);
+        if (packer.largestFreeBlock() != 1024) {
+            throw new AssertionError("BuddyPacker did not merge the free buddies: " + packer.largestFreeBlock());
+        }
+        System.out.println("buddy allocated " + allocations + " blocks");
+    }
+
+    private static void checkStrip() {
+        var random = new Random(SEED);
+        var packer = new StripPacker(1024);
+        var all = new ArrayList<PackerRegion<?>>();
+        for (int batch = 0; batch < 50; batch++) {
+            int settled = packer.settledHeight();
+            var regions = Packer.sort(generateRandom(random, 200, 64));
+            packer.fit(regions);
+            for (var region : regions) {
+                if (region.fit().orElseThrow().y() < settled) {
+                    throw new AssertionError("StripPacker placed " + region + " above the settled height " + settled);
+                }
+            }
+            all.addAll(regions);
+        }
+        var problem = LayoutValidator.validate(packer, all);
+        if (problem.isPresent()) {
+            throw new AssertionError("StripPacker (seed " + SEED + "): " + problem.get());
+        }
+        System.out.println("strip packed " + all.size() + " regions in batches, 1024x" + packer.height());
+    }
+
+    private static void checkExact() {
+        // the smallest rectangles that hold the squares 1x1 to nxn are known
+        long[] known = {1, 6, 15, 35, 60, 99, 154};
+        for (int n = 1; n <= known.length; n++) {
+            var regions = new ArrayList<PackerRegion<?>>();
+            for (int i = 1; i <= n; i++) regions.add(PackerRegion.sized(i, i));
+            var packer = new ExactPacker();
+            packer.fit(regions);
+            if (!packer.optimal() || (long) packer.width() * packer.height() != known[n - 1]) {
+                throw new AssertionError("ExactPacker packed the squares 1 to " + n + " in " + packer.width() + "x" + packer.height());
+            }
+            var problem = LayoutValidator.validateExtent(packer, regions);
+            if (problem.isPresent()) {
+                throw new AssertionError("ExactPacker (squares " + n + "): " + problem.get());
+            }
+        }
+        var random = new Random(SEED);
+        var regions = generateRandom(random, 10, 8);
+        var packer = new ExactPacker();
+        packer.fit(regions, Deadline.after(Duration.ofSeconds(5)));
+        var problem = LayoutValidator.validateExtent(packer, regions);
+        if (problem.isPresent()) {
+            throw new AssertionError("ExactPacker (seed " + SEED + "): " + problem.get());
+        }
+        System.out.println("exact packed " + regions.size() + " regions, " + packer.width() + "x" + packer.height() + ", optimal: " + packer.optimal());
+    }
+
+    /**
+     * Computes the mean ratio of the bounding box area of each group to the area of its regions.
+     */
+    private static double groupSpread(List<PackerRegion<?>> regions) {
+        var bounds = new HashMap<Object, long[]>();
+        for (var region : regions) {
+            if (region.group() == null) continue;
+            var fit = region.fit().orElseThrow();
+            var b = bounds.computeIfAbsent(region.group(), k -> new long[]{Long.MAX_VALUE, Long.MAX_VALUE, 0, 0, 0});
+            b[0] = Math.min(b[0], fit.x());
+            b[1] = Math.min(b[1], fit.y());
+            b[2] = Math.max(b[2], fit.x() + (fit.rotated() ? region.height() : region.width()));
+            b[3] = Math.max(b[3], fit.y() + (fit.rotated() ? region.width() : region.height()));
+            b[4] += (long) region.width() * region.height();
+        }
+        double sum = 0;
+        for (var b : bounds.values()) {
+            sum += (double) (b[2] - b[0]) * (b[3] - b[1]) / b[4];
+        }
+        return sum / bounds.size();
+    }
+
+    private static void checkGrouped() {
+        var random = new Random(SEED);
+        var regions = new ArrayList<PackerRegion<?>>();
+        for (int group = 0; group < 300; group++) {
+            int height = 8 + random.nextInt(32);
+            for (int i = 0, count = 2 + random.nextInt(30); i < count; i++) {
+                regions.add(PackerRegion.grouped(PackerRegion.sized(1 + random.nextInt(height), height), i, group));
+            }
+        }
+        regions.addAll(generateRandom(random, 2000, 64));
+        Packer.sort(regions);
+
+        var ungrouped = new GrowingPacker();
+        ungrouped.fit(regions);
+        long ungroupedArea = (long) ungrouped.width() * ungrouped.height();
+        double ungroupedSpread = groupSpread(regions);
+
+        var packer = new GroupedPacker(GrowingPacker::new).tolerance(0.05);
+        packer.fit(regions);
+        var problem = LayoutValidator.validateExtent(packer, regions);
+        if (problem.isPresent()) {
+            throw new AssertionError("GroupedPacker (seed " + SEED + "): " + problem.get());
+        }
+        long area = (long) packer.width() * packer.height();
+        if (area > ungroupedArea * 1.05) {
+            throw new AssertionError("GroupedPacker grew the area from " + ungroupedArea + " to " + area);
+        }
+        double spread = groupSpread(regions);
+        if (packer.boxedGroups() == 0 || spread >= ungroupedSpread) {
+            throw new AssertionError("GroupedPacker did not cluster the groups: spread " + spread + ", ungrouped " + ungroupedSpread);
+        }
+        // a bounded canvas leaves regions unfitted, which must not keep the fits of the ungrouped layout
+        var fixed = new GroupedPacker(() -> new FixedPacker(1024, 1024)).tolerance(0.05);
+        fixed.fit(regions);
+        problem = LayoutValidator.validate(fixed, regions);
+        if (problem.isPresent()) {
+            throw new AssertionError("GroupedPacker fixed (seed " + SEED + "): " + problem.get());
+        }
+
+        System.out.printf("grouped packed %d regions, %dx%d (ungrouped %dx%d), %d groups boxed, group spread %.2f (ungrouped %.2f)%n",
+            regions.size(), packer.width(), packer.height(), ungrouped.width(), ungrouped.height(), packer.boxedGroups(), spread, ungroupedSpread);
+    }
+
+    private static void checkAuto() {
+        var random = new Random(SEED);
+        var regions = new ArrayList<>(generateRandom(random, 5000, 64));
+        long area = 0;
+        for (var region : regions) {
+            area += (long) region.width() * region.height();
+        }
+        var decision = AutoPacker.plan(regions);
+        var statistics = decision.statistics();
+        if (statistics.count() != 5000 || statistics.totalArea() != area || !statistics.sorted() || decision.sort()) {
+            throw new AssertionError("AutoPacker collected wrong statistics: " + statistics);
+        }
+        statistics.sideHistogram()[0]++;
+        if (!statistics.equals(AutoPacker.plan(regions).statistics()) || !statistics.toString().contains("sideHistogram=[")) {
+            throw new AssertionError("AutoPacker statistics are mutable or not comparable: " + statistics);
+        }
+        if (decision.engine() != AutoPacker.Engine.STRIP) {
+            throw new AssertionError("AutoPacker chose " + decision.engine() + " for distinct sizes");
+        }
+
+        Collections.shuffle(regions, random);
+        var packer = new AutoPacker();
+        packer.fit(regions);
+        if (!packer.decision().sort() || packer.decision().statistics().sorted()) {
+            throw new AssertionError("AutoPacker did not sort shuffled regions");
+        }
+        var problem = LayoutValidator.validateExtent(packer, regions);
+        if (problem.isPresent()) {
+            throw new AssertionError("AutoPacker (seed " + SEED + "): " + problem.get());
+        }
+        // with sorting disabled, the chosen packer gets the regions in the given order
+        var unsorted = new AutoPacker().sort(false);
+        unsorted.fit(regions);
+        var fits = regions.stream().map(r -> r.fit().orElse(null)).toList();
+        if (unsorted.decision().sort() || unsorted.decision().engine() != AutoPacker.Engine.STRIP) {
+            throw new AssertionError("AutoPacker decided " + unsorted.decision() + " with sorting disabled");
+        }
+        new StripPacker(unsorted.decision().canvasWidth()).fit(regions);
+        for (int i = 0; i < regions.size(); i++) {
+            if (!Objects.equals(regions.get(i).fit().orElse(null), fits.get(i))) {
+                throw new AssertionError("AutoPacker sorted the regions with sorting disabled");
+            }
+        }
+
+        var uniform = new ArrayList<PackerRegion<?>>();
+        for (int i = 0; i < 30_000; i++) {
+            uniform.add(PackerRegion.sized(16, 16));
+        }
+        packer.fit(uniform);
+        if (packer.decision().engine() == AutoPacker.Engine.STRIP || packer.decision().statistics().distinctSizes() != 1) {
+            throw new AssertionError("AutoPacker chose " + packer.decision() + " for identical sizes");
+        }
+        problem = LayoutValidator.validateExtent(packer, uniform);
+        if (problem.isPresent()) {
+            throw new AssertionError("AutoPacker (uniform): " + problem.get());
+        }
+        System.out.println("auto chose " + decision.engine() + " for distinct sizes and " + packer.decision().engine()
+                           + " for identical sizes, predicted " + packer.decision().predictedNanos() + " ns");
+    }
+
+    private static void checkBestOfDeadline() {
+        var regions = generateRandom(new Random(SEED), 20_000, 64);
+        var reference = new GrowingPacker();
+        reference.fit(regions);
+        var fits = regions.stream().map(r -> r.fit().orElse(null)).toList();
+
+        // a single pass has nothing to cut short
+        if (!new GrowingPacker().fit(regions, Deadline.after(Duration.ZERO))) {
+            throw new AssertionError("GrowingPacker did not complete its single pass");
+        }
+
+        // an expired deadline only allows the fallback in the given order
+        var packer = new BestOfPacker(GrowingPacker::new);
+        if (packer.fit(regions, Deadline.after(Duration.ZERO))) {
+            throw new AssertionError("BestOfPacker completed with an expired deadline");
+        }
+        for (int i = 0; i < regions.size(); i++) {
+            if (!Objects.equals(regions.get(i).fit().orElse(null), fits.get(i))) {
+                throw new AssertionError("BestOfPacker did not keep the fallback layout with an expired deadline");
+            }
+        }
+        if (!packer.fit(regions, Deadline.never())) {
+            throw new AssertionError("BestOfPacker did not complete without a deadline");
+        }
+        System.out.println("best-of kept the fallback with an expired deadline");
+    }
+
+    private static void checkUndoLog() {
+        var packer = new FixedPacker(4096, 4096);
+        packer.fit(generateRandom(new Random(SEED), 2_000, 64));
+        int checkpoint = packer.checkpoint();
+        if (checkpoint != 0) {
+            throw new AssertionError("FixedPacker recorded " + checkpoint + " splits without a checkpoint");
+        }
+        packer.fit(generateRandom(new Random(SEED), 100, 64));
+        packer.release(checkpoint);
+        if ((checkpoint = packer.checkpoint()) != 0) {
+            throw new AssertionError("FixedPacker kept " + checkpoint + " splits after the last release");
+        }
+        packer.release(checkpoint);
+        System.out.println("fixed packer dropped the undo log without a checkpoint");
+    }
+
+    public static void main(String[] args) {
+        checkScanner();
+        checkValidator();
+        checkUndoLog();
+        checkBestOfDeadline();
+        checkAll("random", () -> generateRandom(new Random(SEED), 20_000, 64));
+        checkAll("runs", () -> generateRuns(new Random(SEED), 500_000));
+        checkCompaction();
+        checkCache();
+        checkLayoutQueries();
+        checkLong();
+        checkPublisher();
+        checkBuddy();
+        checkStrip();
+        checkExact();
+        checkGrouped();
+        checkAuto();
+        check("random AnnealingPacker", new AnnealingPacker(GrowingPacker::new)
+            .iterations(50)
+            .allowRotation(true)
+            .seed(SEED), generateRandom(new Random(SEED), 300, 64), true);
+    }
+}
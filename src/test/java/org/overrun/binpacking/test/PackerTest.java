@@ -24,11 +24,24 @@
 
 package org.overrun.binpacking.test;
 
+import org.overrun.binpacking.AnnealingPacker;
+import org.overrun.binpacking.AtlasCompositor;
+import org.overrun.binpacking.BestOfPacker;
+import org.overrun.binpacking.Deadline;
+import org.overrun.binpacking.DedupPacker;
 import org.overrun.binpacking.FixedPacker;
 import org.overrun.binpacking.GrowingPacker;
+import org.overrun.binpacking.PackedLayout;
 import org.overrun.binpacking.Packer;
+import org.overrun.binpacking.PackerFitPos;
 import org.overrun.binpacking.PackerRegion;
+import org.overrun.binpacking.cli.Main;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -78,11 +91,165 @@ public final class PackerTest {
                 System.out.println(r.userdata())));
     }
 
-    public static void main(String[] args) {
+    private static void testEmptyRuns() {
+        for (var packer : List.of(new FixedPacker(4, 4), new GrowingPacker())) {
+            var s = List.of(
+                PackerRegion.sized(0, 3),
+                PackerRegion.sized(0, 3),
+                PackerRegion.sized(2, 0),
+                PackerRegion.sized(2, 0)
+            );
+            packer.fit(s);
+            s.forEach(region -> {
+                var f = region.fit().orElseThrow(() -> new AssertionError("empty region not fitted: " + region));
+                System.out.println(f.x() + ", " + f.y() + ": " + region.width() + ", " + region.height());
+            });
+        }
+    }
+
+    private static void testBestOf(List<PackerRegion<?>> testData) {
+        var packer = new BestOfPacker(GrowingPacker::new);
+        boolean completed = packer.fit(testData, Deadline.after(Duration.ofMillis(10)));
+        System.out.println(packer.width() + ", " + packer.height() + ", completed: " + completed);
+        testData.forEach(region ->
+            region.ifFitPresent((r, f) ->
+                System.out.println(f.x() + ", " + f.y() + ": " + r.width() + ", " + r.height())
+            )
+        );
+    }
+
+    private static void testAnnealing(List<PackerRegion<?>> testData) {
+        var packer = new AnnealingPacker(GrowingPacker::new)
+            .iterations(100)
+            .allowRotation(true);
+        packer.fit(testData);
+        System.out.println(packer.width() + ", " + packer.height());
+        testData.forEach(region ->
+            region.ifFitPresent((r, f) ->
+                System.out.println(f.x() + ", " + f.y() + ": " + r.width() + ", " + r.height() + (f.rotated() ? " rotated" : ""))
+            )
+        );
+    }
+
+    private static void testCompositor() {
+        var s = Packer.sort(
+            PackerRegion.delegate(PackerRegion.sized(2, 2), ByteBuffer.wrap(new byte[]{1, 2, 3, 4})),
+            PackerRegion.delegate(PackerRegion.sized(1, 2), ByteBuffer.wrap(new byte[]{5, 6})),
+            PackerRegion.delegate(PackerRegion.sized(3, 1), ByteBuffer.wrap(new byte[]{7, 8, 9}))
+        );
+        var packer = new GrowingPacker();
+        packer.fit(s);
+        var atlas = AtlasCompositor.composite(packer, s, 1);
+        int painted = 0;
+        for (var region : s) {
+            var fit = region.fit().orElseThrow();
+            for (int y = 0; y < region.height(); y++) {
+                for (int x = 0; x < region.width(); x++) {
+                    byte expected = region.userdata().get(y * region.width() + x);
+                    byte actual = atlas.get((fit.y() + y) * packer.width() + fit.x() + x);
+                    if (actual != expected) {
+                        throw new AssertionError("AtlasCompositor wrote " + actual + " instead of " + expected + " at " + (fit.x() + x) + ", " + (fit.y() + y));
+                    }
+                    painted++;
+                }
+            }
+        }
+        for (int i = 0; i < atlas.capacity(); i++) {
+            if (atlas.get(i) != 0) painted--;
+        }
+        if (painted != 0 || atlas.position() != 0) {
+            throw new AssertionError("AtlasCompositor wrote outside the regions");
+        }
+
+        // a rotated 3x2 region from rows 4 bytes apart, after one byte, into rows of 5 bytes
+        var region = PackerRegion.sized(3, 2);
+        region.setFit(PackerFitPos.of(1, 0, true));
+        var pixels = ByteBuffer.wrap(new byte[]{0, 1, 2, 3, 0, 4, 5, 6}).position(1);
+        var dst = ByteBuffer.allocate(5 * 4);
+        AtlasCompositor.composite(List.of(region), r -> pixels, r -> 4, dst, 5, 1);
+        byte[] expected = {
+            0, 4, 1, 0, 0,
+            0, 5, 2, 0, 0,
+            0, 6, 3, 0, 0,
+            0, 0, 0, 0, 0
+        };
+        if (!Arrays.equals(dst.array(), expected) || pixels.position() != 1) {
+            throw new AssertionError("AtlasCompositor composited " + Arrays.toString(dst.array()));
+        }
+        System.out.println("composited " + (s.size() + 1) + " regions");
+    }
+
+    private static void testDedup() {
+        var s = Packer.sort(
+            PackerRegion.delegate(PackerRegion.sized(2, 2), "a"),
+            PackerRegion.delegate(PackerRegion.sized(2, 2), "b"),
+            PackerRegion.delegate(PackerRegion.sized(2, 2), "a"),
+            PackerRegion.delegate(PackerRegion.sized(4, 2), "a")
+        );
+        var packer = new DedupPacker(new GrowingPacker());
+        packer.fit(s);
+        System.out.println(packer.width() + ", " + packer.height() + ", unique: " + packer.uniqueCount());
+        s.forEach(region ->
+            region.ifFitPresent((r, f) ->
+                System.out.println(f.x() + ", " + f.y() + ": " + r.userdata())));
+    }
+
+    private static void testTransaction() {
+        var packer = new FixedPacker(400, 500);
+        var first = Packer.sort(PackerRegion.sized(300, 300), PackerRegion.sized(100, 300));
+        System.out.println("first: " + packer.fitAll(first));
+        int checkpoint = packer.checkpoint();
+        var tooMany = Packer.sort(PackerRegion.sized(200, 200), PackerRegion.sized(200, 150), PackerRegion.sized(400, 100));
+        System.out.println("too many: " + packer.fitAll(tooMany) + ", " + tooMany.stream().allMatch(r -> r.fit().isEmpty()));
+        var second = Packer.sort(PackerRegion.sized(200, 200), PackerRegion.sized(200, 150));
+        System.out.println("second: " + packer.fitAll(second));
+        packer.rollback(checkpoint);
+        packer.release(checkpoint);
+        var third = Packer.sort(PackerRegion.sized(400, 200));
+        System.out.println("after rollback: " + packer.fitAll(third));
+        third.forEach(region ->
+            region.ifFitPresent((r, f) ->
+                System.out.println(f.x() + ", " + f.y() + ": " + r.width() + ", " + r.height())
+            )
+        );
+    }
+
+    private static void testCli() throws IOException {
+        var directory = Files.createTempDirectory("bin-packing");
+        Files.writeString(directory.resolve("a.csv"), "# id,width,height\nstone,16,16\ndirt,16,16\nsword,8,32\n");
+        Files.writeString(directory.resolve("b.json"), "[{\"id\": \"grass\", \"width\": 32, \"height\": 16}, {\"id\": \"\\u0078\", \"width\": 8, \"height\": 8}]");
+        int code = Main.run(System.out, System.err, "--jobs", "2",
+            directory.resolve("a.csv").toString(), directory.resolve("b.json").toString());
+        System.out.println("exit code: " + code);
+        try (var in = Files.newInputStream(directory.resolve("b.layout"))) {
+            var layout = PackedLayout.read(in);
+            System.out.println("x: " + layout.find("x").orElseThrow());
+        }
+        Files.writeString(directory.resolve("c.csv"), "stone,16,-16\n");
+        System.out.println("negative size exit code: " + Main.run(System.out, System.err, directory.resolve("c.csv").toString()));
+    }
+
+    public static void main(String[] args) throws IOException {
         var testData = generateData();
         System.out.println("----- FixedPacker -----");
         testFixed(testData);
         System.out.println("----- GrowingPacker -----");
         testGrowing(testData);
+        System.out.println("----- Empty regions -----");
+        testEmptyRuns();
+        System.out.println("----- BestOfPacker -----");
+        testBestOf(testData);
+        System.out.println("----- AnnealingPacker -----");
+        testAnnealing(testData);
+        System.out.println("----- AtlasCompositor -----");
+        testCompositor();
+        System.out.println("----- DedupPacker -----");
+        testDedup();
+        System.out.println("----- FixedPacker transaction -----");
+        testTransaction();
+        System.out.println("----- Command line -----");
+        testCli();
+        System.out.println("----- RectScanner -----");
+        PackerStressTest.checkScanner();
     }
 }
@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Overrun Organization
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.overrun.binpacking.internal;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The Vector API implementation of {@link RectScanner}.
+ * <p>
+ * This class is compiled in the separate {@code vector} source set, so that the module does not
+ * depend on the incubating {@code jdk.incubator.vector}. It is only loaded reflectively by
+ * {@link RectScanner} if that module is resolved.
+ *
+ * @author squid233
+ * @since 0.6.0
+ */
+final class VectorRectScanner implements RectScanner.Scan {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    VectorRectScanner() {
+    }
+
+    @Override
+    public int findBestShortSideFit(int[] widths, int[] heights, int count, int w, int h) {
+        int bound = SPECIES.loopBound(count);
+        var none = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+        var min = none;
+        // first pass: the shortest leftover side of the fitting rectangles
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            var score = score(widths, heights, i, w, h, none);
+            min = min.min(score);
+        }
+        int bestScore = min.reduceLanes(VectorOperators.MIN);
+        int tail = RectScanner.findBestShortSideFitScalar(widths, heights, count, w, h, bound);
+        int tailScore = tail >= 0 ? Math.min(widths[tail] - w, heights[tail] - h) : Integer.MAX_VALUE;
+        if (bestScore == Integer.MAX_VALUE) {
+            return tail;
+        }
+        if (tailScore < bestScore) {
+            return tail;
+        }
+        // second pass: the lowest index with that score
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            VectorMask<Integer> hit = score(widths, heights, i, w, h, none).eq(bestScore);
+            if (hit.anyTrue()) {
+                return i + hit.firstTrue();
+            }
+        }
+        return tail;
+    }
+
+    private static IntVector score(int[] widths, int[] heights, int i, int w, int h, IntVector none) {
+        var dw = IntVector.fromArray(SPECIES, widths, i).sub(w);
+        var dh = IntVector.fromArray(SPECIES, heights, i).sub(h);
+        var fits = dw.compare(VectorOperators.GE, 0).and(dh.compare(VectorOperators.GE, 0));
+        return none.blend(dw.min(dh), fits);
+    }
+}